@@ -0,0 +1,155 @@
+package ru.practicum.view;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Кэш просмотров событий по id. Запись живёт ttl-ms; после refresh-after-ms она ещё отдаётся,
+ * но в фоне перечитывается. Одновременные промахи по одним и тем же id объединяются:
+ * сервер статистики спрашивается один раз, остальные ждут тот же результат.
+ * При переполнении max-size вытесняются давно не читавшиеся записи.
+ */
+@Component
+@Slf4j
+public class ViewCache {
+
+    private final boolean enabled;
+    private final long ttlMs;
+    private final long refreshAfterMs;
+    private final Map<Long, Entry> entries;
+    private final Map<Long, CompletableFuture<Long>> loading = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refresher;
+
+    public ViewCache(@Value("${view.cache.enabled:true}") boolean enabled,
+                     @Value("${view.cache.ttl-ms:60000}") long ttlMs,
+                     @Value("${view.cache.refresh-after-ms:45000}") long refreshAfterMs,
+                     @Value("${view.cache.max-size:100000}") int maxSize) {
+        this.enabled = enabled;
+        this.ttlMs = ttlMs;
+        this.refreshAfterMs = Math.min(refreshAfterMs, ttlMs);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.refresher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100),
+                task -> {
+                    Thread thread = new Thread(task, "view-cache-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Просмотры по id: свежие берутся из кэша, у сервера статистики loader запрашивает только недостающие.
+     */
+    public Map<Long, Long> get(Collection<Long> ids, Function<List<Long>, Map<Long, Long>> loader) {
+        if (!enabled) {
+            return loader.apply(new ArrayList<>(ids));
+        }
+        long now = System.currentTimeMillis();
+        Map<Long, Long> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        List<Long> stale = new ArrayList<>();
+        synchronized (entries) {
+            for (Long id : new LinkedHashSet<>(ids)) {
+                Entry entry = entries.get(id);
+                if (entry == null || now - entry.loadedAt >= ttlMs) {
+                    missing.add(id);
+                    continue;
+                }
+                result.put(id, entry.views);
+                if (now - entry.loadedAt >= refreshAfterMs) {
+                    stale.add(id);
+                }
+            }
+        }
+        if (!stale.isEmpty()) {
+            refresher.execute(() -> load(stale, loader));
+        }
+        if (!missing.isEmpty()) {
+            try {
+                load(missing, loader).forEach((id, views) -> result.put(id, views.join()));
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Загружает id, которые ещё никто не грузит, одним вызовом loader; для остальных возвращает чужую загрузку.
+     * Свои future завершаются при любом исходе loader, включая Error, иначе ждущие их потоки зависли бы навсегда.
+     */
+    private Map<Long, CompletableFuture<Long>> load(List<Long> ids, Function<List<Long>, Map<Long, Long>> loader) {
+        Map<Long, CompletableFuture<Long>> futures = new HashMap<>();
+        List<Long> own = new ArrayList<>();
+        for (Long id : ids) {
+            CompletableFuture<Long> created = new CompletableFuture<>();
+            CompletableFuture<Long> existing = loading.putIfAbsent(id, created);
+            futures.put(id, existing != null ? existing : created);
+            if (existing == null) {
+                own.add(id);
+            }
+        }
+        if (own.isEmpty()) {
+            return futures;
+        }
+        try {
+            Map<Long, Long> views = loader.apply(own);
+            long now = System.currentTimeMillis();
+            synchronized (entries) {
+                for (Long id : own) {
+                    entries.put(id, new Entry(views.getOrDefault(id, 0L), now));
+                }
+            }
+            for (Long id : own) {
+                futures.get(id).complete(views.getOrDefault(id, 0L));
+            }
+        } catch (Throwable e) {
+            log.warn("Не удалось получить просмотры событий {}: {}", own, e.toString());
+            for (Long id : own) {
+                futures.get(id).completeExceptionally(e);
+            }
+        } finally {
+            for (Long id : own) {
+                loading.remove(id, futures.get(id));
+            }
+        }
+        return futures;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final long views;
+        private final long loadedAt;
+    }
+}
@@ -1,7 +1,5 @@
 package ru.practicum.view;
 
-import org.springframework.http.ResponseEntity;
-
 import java.util.List;
 import java.util.Map;
 
@@ -10,5 +8,5 @@ public interface ViewService {
 
     Long getViewsById(Long eventId);
 
-    ResponseEntity<Object> saveHit(String uri, String ip);
+    void saveHit(String uri, String ip);
 }
@@ -1,15 +1,14 @@
 package ru.practicum.view;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.EntityStatsDto;
 import ru.practicum.HitDto;
+import ru.practicum.HitSender;
 import ru.practicum.StatClient;
-import ru.practicum.ViewStatsDto;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -21,17 +20,20 @@ import java.util.stream.Collectors;
 public class ViewServiceImpl implements ViewService {
 
     private static final String APP = "ewm-main-service";
+    private static final String EVENTS_ROUTE = "events";
 
     private final StatClient statClient;
+    private final HitSender hitSender;
+    private final ViewCache viewCache;
 
     @Override
-    public ResponseEntity<Object> saveHit(String uri, String ip) {
+    public void saveHit(String uri, String ip) {
         HitDto hit = HitDto.builder()
                 .ip(ip)
                 .app(APP)
                 .uri(uri)
                 .build();
-        return statClient.saveHit(hit);
+        hitSender.send(hit);
     }
 
     @Override
@@ -40,32 +42,24 @@ public class ViewServiceImpl implements ViewService {
         if (eventIds == null || eventIds.isEmpty()) {
             return Collections.emptyMap();
         }
-        List<String> urisList = new ArrayList<>();
-        for (Long id : eventIds) {
-            urisList.add("/events/" + id);
-        }
-        List<ViewStatsDto> statsList = statClient.getStatistics(
-                LocalDateTime.now().minusDays(60),
-                LocalDateTime.now(),
-                urisList,
-                true);
-        return statsList != null ? statsList.stream()
-                .collect(Collectors.toMap(
-                        viewStats -> Long.parseLong(viewStats.getUri().substring("/events/".length())),
-                        ViewStatsDto::getHits
-                )) : null;
+        return viewCache.get(eventIds, this::loadViews);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Long getViewsById(Long eventId) {
-        List<String> urisList = new ArrayList<>();
-        urisList.add("/events/" + eventId);
-        List<ViewStatsDto> statsList = statClient.getStatistics(
+        return viewCache.get(List.of(eventId), this::loadViews).getOrDefault(eventId, 0L);
+    }
+
+    private Map<Long, Long> loadViews(List<Long> eventIds) {
+        List<EntityStatsDto> statsList = statClient.getEntityStatistics(
                 LocalDateTime.now().minusDays(60),
                 LocalDateTime.now(),
-                urisList,
+                EVENTS_ROUTE,
+                eventIds,
                 true);
-        return !statsList.isEmpty() ? statsList.get(0).getHits() : 0L;
+        return statsList != null ? statsList.stream()
+                .collect(Collectors.toMap(EntityStatsDto::getId, EntityStatsDto::getHits, (a, b) -> a))
+                : Collections.emptyMap();
     }
 }
@@ -0,0 +1,84 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.List;
+
+/**
+ * Отправка пакета обращений с разбором ошибок. Временные ошибки - нет соединения, 5xx и 429 -
+ * пробрасываются вызывающему в {@link UndeliveredHitsException} вместе с ещё не отправленным хвостом пакета,
+ * который тот повторяет или кладёт в {@link HitSpool}.
+ * Остальные ответы 4xx повторять бесполезно: пакет делится пополам, пока отвергнутые обращения
+ * не останутся по одному, они отбрасываются и считаются в метрике stat.client.hits.invalid.
+ * Половины отправляются по порядку, поэтому принятые и отброшенные обращения всегда образуют начало пакета.
+ */
+@Component
+@Slf4j
+public class HitBatchSender {
+
+    private final StatClient statClient;
+    private final Counter invalid;
+
+    public HitBatchSender(StatClient statClient, MeterRegistry meterRegistry) {
+        this.statClient = statClient;
+        this.invalid = meterRegistry.counter("stat.client.hits.invalid");
+    }
+
+    /**
+     * Возвращает число отброшенных обращений.
+     *
+     * @throws UndeliveredHitsException при временной ошибке, с хвостом пакета, который ещё не отправлен
+     */
+    public int send(List<HitDto> batch) {
+        Progress progress = new Progress();
+        try {
+            send(batch, progress);
+            return progress.dropped;
+        } catch (RuntimeException e) {
+            throw new UndeliveredHitsException(batch.subList(progress.done, batch.size()), progress.dropped, e);
+        }
+    }
+
+    private void send(List<HitDto> part, Progress progress) {
+        try {
+            statClient.saveHits(part);
+            progress.done += part.size();
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            if (part.size() == 1) {
+                invalid.increment();
+                log.warn("Сервер статистики отверг обращение, оно отброшено: {}, {}", part.get(0), e.getMessage());
+                progress.done++;
+                progress.dropped++;
+                return;
+            }
+            int middle = part.size() / 2;
+            send(part.subList(0, middle), progress);
+            send(part.subList(middle, part.size()), progress);
+        }
+    }
+
+    public static boolean isTransient(RuntimeException e) {
+        if (e instanceof WebClientRequestException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) e).getRawStatusCode();
+            return status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return false;
+    }
+
+    private static class Progress {
+        private int done;
+        private int dropped;
+    }
+}
@@ -0,0 +1,188 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная запись обращений: send() кладёт обращение в ограниченную очередь и сразу возвращается,
+ * а отдельный поток отправляет обращения пакетами через /hits - как только набралось batch.size
+ * или с первого обращения пакета прошло linger-ms. При временной ошибке неотправленный хвост пакета
+ * повторяется до max-retries раз с экспоненциальной задержкой и случайным разбросом,
+ * а обращения, отвергнутые сервером с 4xx, {@link HitBatchSender} отбрасывает без повторов.
+ * Переполнение очереди и ошибки отправки не доходят до вызывающего, а считаются в метриках
+ * stat.client.hits.rejected и stat.client.hits.failed.
+ * Пакет, не отправленный после всех повторов, уходит в {@link HitSpool}, а пока там есть обращения,
+ * новые пакеты сразу пишутся туда же, чтобы не обгонять очередь.
+ * При stat.client.async.enabled=false обращение отправляется синхронно, как раньше.
+ */
+@Component
+@Slf4j
+public class HitSender {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final StatClient statClient;
+    private final HitBatchSender hitBatchSender;
+    private final HitSpool hitSpool;
+    private final boolean enabled;
+    private final long shutdownTimeoutMs;
+    private final int batchSize;
+    private final long lingerMs;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final BlockingQueue<HitDto> queue;
+    private final Counter sent;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Counter batches;
+    private final Counter retries;
+
+    private volatile boolean running;
+    private Thread sender;
+
+    public HitSender(StatClient statClient,
+                     HitBatchSender hitBatchSender,
+                     HitSpool hitSpool,
+                     MeterRegistry meterRegistry,
+                     @Value("${stat.client.async.enabled:true}") boolean enabled,
+                     @Value("${stat.client.async.capacity:10000}") int capacity,
+                     @Value("${stat.client.async.shutdown-timeout-ms:5000}") long shutdownTimeoutMs,
+                     @Value("${stat.client.batch.size:100}") int batchSize,
+                     @Value("${stat.client.batch.linger-ms:50}") long lingerMs,
+                     @Value("${stat.client.batch.max-retries:3}") int maxRetries,
+                     @Value("${stat.client.batch.backoff-ms:100}") long backoffMs) {
+        this.statClient = statClient;
+        this.hitBatchSender = hitBatchSender;
+        this.hitSpool = hitSpool;
+        this.enabled = enabled;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = lingerMs;
+        this.maxRetries = maxRetries;
+        this.backoffMs = backoffMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.sent = meterRegistry.counter("stat.client.hits.sent");
+        this.rejected = meterRegistry.counter("stat.client.hits.rejected");
+        this.failed = meterRegistry.counter("stat.client.hits.failed");
+        this.batches = meterRegistry.counter("stat.client.batches.sent");
+        this.retries = meterRegistry.counter("stat.client.batches.retried");
+        Gauge.builder("stat.client.hits.queue", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        sender = new Thread(this::runSender, "stat-hit-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    public void send(HitDto hit) {
+        if (!enabled) {
+            try {
+                statClient.saveHit(hit);
+            } catch (RuntimeException e) {
+                if (!HitBatchSender.isTransient(e) || !hitSpool.append(List.of(hit))) {
+                    throw e;
+                }
+                log.warn("Сервер статистики недоступен, обращение сохранено в очередь на диске: {}", e.getMessage());
+            }
+            return;
+        }
+        if (!queue.offer(hit)) {
+            rejected.increment();
+            log.warn("Очередь обращений к серверу статистики переполнена, обращение отброшено: {}", hit);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sender == null) {
+            return;
+        }
+        running = false;
+        try {
+            sender.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Остановка без отправки обращений: {}", queue.size());
+        }
+    }
+
+    private void runSender() {
+        List<HitDto> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                HitDto first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || left <= 0 || !running) {
+                        break;
+                    }
+                    HitDto next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                sendBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendBatch(List<HitDto> batch) throws InterruptedException {
+        if (hitSpool.isActive() && hitSpool.append(batch)) {
+            return;
+        }
+        List<HitDto> pending = batch;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sent.increment(pending.size() - hitBatchSender.send(pending));
+                batches.increment();
+                return;
+            } catch (UndeliveredHitsException e) {
+                sent.increment(pending.size() - e.getRemainder().size() - e.getDropped());
+                pending = e.getRemainder();
+                if (attempt >= maxRetries) {
+                    if (hitSpool.append(pending)) {
+                        log.warn("Сервер статистики недоступен, пакет из {} обращений сохранён в очередь на диске",
+                                pending.size());
+                        return;
+                    }
+                    failed.increment(pending.size());
+                    log.warn("Не удалось отправить пакет обращений на сервер статистики, размер {}: {}",
+                            pending.size(), e.getMessage());
+                    return;
+                }
+                retries.increment();
+                Thread.sleep(ThreadLocalRandom.current().nextLong(Math.max(1, backoffMs << attempt)) + 1);
+            }
+        }
+    }
+}
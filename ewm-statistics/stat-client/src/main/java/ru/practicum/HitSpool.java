@@ -0,0 +1,417 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Локальная очередь обращений на диске на время недоступности сервера статистики.
+ * Файлы-сегменты только дописываются записями [длина][CRC32][app, uri, ip, время],
+ * имя сегмента - глобальное смещение его начала, позиция чтения хранится в файле position.
+ * Фоновый поток отправляет обращения пакетами по порядку записи и сдвигает позицию после успешной
+ * отправки, а при временной ошибке - за уже отправленное начало пакета, поэтому повторно после падения
+ * может уйти только последний пакет.
+ * Повторяются только временные ошибки; обращения, отвергнутые сервером с 4xx, {@link HitBatchSender}
+ * отбрасывает, и позиция сдвигается дальше, иначе одна плохая запись навсегда остановила бы очередь.
+ * Объём ограничен max-size-mb: сверх него новые обращения отбрасываются.
+ */
+@Component
+@Slf4j
+public class HitSpool {
+
+    private static final String SUFFIX = ".spool";
+    private static final String POSITION = "position";
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    private final HitBatchSender hitBatchSender;
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxBytes;
+    private final long segmentBytes;
+    private final int batchSize;
+    private final long replayIntervalMs;
+    private final long maxBackoffMs;
+    private final TreeMap<Long, FileChannel> segments = new TreeMap<>();
+    private final Counter replayed;
+    private final Counter rejected;
+
+    private long writeOffset;
+    private long readOffset;
+    private long depth;
+    private volatile LocalDateTime oldest;
+    private volatile boolean running;
+    private Thread replayer;
+
+    public HitSpool(HitBatchSender hitBatchSender,
+                    MeterRegistry meterRegistry,
+                    @Value("${stat.client.spool.enabled:false}") boolean enabled,
+                    @Value("${stat.client.spool.dir:./data/stat-spool}") String dir,
+                    @Value("${stat.client.spool.max-size-mb:256}") long maxSizeMb,
+                    @Value("${stat.client.spool.segment-size-mb:16}") long segmentSizeMb,
+                    @Value("${stat.client.spool.replay-batch-size:500}") int batchSize,
+                    @Value("${stat.client.spool.replay-interval-ms:1000}") long replayIntervalMs,
+                    @Value("${stat.client.spool.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.hitBatchSender = hitBatchSender;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.segmentBytes = Math.min(segmentSizeMb * 1024 * 1024, maxBytes / 4);
+        this.batchSize = batchSize;
+        this.replayIntervalMs = replayIntervalMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.replayed = meterRegistry.counter("stat.client.spool.replayed");
+        this.rejected = meterRegistry.counter("stat.client.spool.rejected");
+        Gauge.builder("stat.client.spool.depth", this, HitSpool::getDepth).register(meterRegistry);
+        Gauge.builder("stat.client.spool.bytes", this, HitSpool::getBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("stat.client.spool.oldest.age", this, HitSpool::oldestAgeSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())),
+                    FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, openSegment(0));
+        }
+        Path position = dir.resolve(POSITION);
+        readOffset = Files.exists(position) ? ByteBuffer.wrap(Files.readAllBytes(position)).getLong() : 0;
+        readOffset = Math.max(readOffset, segments.firstKey());
+        Map.Entry<Long, FileChannel> last = segments.lastEntry();
+        writeOffset = last.getKey() + last.getValue().size();
+        writeOffset = recover(Math.max(readOffset, last.getKey()));
+        List<HitDto> hits = new ArrayList<>();
+        long offset = readOffset;
+        while (offset < writeOffset) {
+            offset = read(offset, Integer.MAX_VALUE, hits);
+            depth += hits.size();
+            hits.clear();
+        }
+        updateOldest();
+        running = true;
+        replayer = new Thread(this::runReplayer, "stat-spool-replayer");
+        replayer.setDaemon(true);
+        replayer.start();
+        log.info("Очередь обращений на диске открыта: {}, обращений {}", dir, depth);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Есть ли неотправленные обращения: пока есть, новые обращения тоже идут в очередь, чтобы сохранить порядок.
+     */
+    public synchronized boolean isActive() {
+        return enabled && depth > 0;
+    }
+
+    /**
+     * Дописывает обращения в очередь; false, если очередь выключена или переполнена.
+     */
+    public synchronized boolean append(List<HitDto> hits) {
+        if (!enabled) {
+            return false;
+        }
+        if (hits.isEmpty()) {
+            return true;
+        }
+        List<byte[]> records = hits.stream().map(HitSpool::encode).collect(Collectors.toList());
+        long size = records.stream().mapToLong(record -> HEADER + record.length).sum();
+        if (getBytes() + size > maxBytes) {
+            rejected.increment(hits.size());
+            log.warn("Очередь обращений на диске переполнена, отброшено обращений: {}", hits.size());
+            return false;
+        }
+        try {
+            for (byte[] record : records) {
+                Map.Entry<Long, FileChannel> last = segments.lastEntry();
+                if (writeOffset - last.getKey() + HEADER + record.length > segmentBytes
+                        && writeOffset > last.getKey()) {
+                    segments.put(writeOffset, openSegment(writeOffset));
+                    last = segments.lastEntry();
+                }
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                ByteBuffer buffer = ByteBuffer.allocate(HEADER + record.length)
+                        .putInt(record.length).putInt((int) crc.getValue()).put(record);
+                buffer.flip();
+                long at = writeOffset - last.getKey();
+                while (buffer.hasRemaining()) {
+                    at += last.getValue().write(buffer, at);
+                }
+                writeOffset = last.getKey() + at;
+            }
+        } catch (IOException e) {
+            log.error("Не удалось записать обращения в очередь на диске", e);
+            return false;
+        }
+        if (depth == 0) {
+            oldest = hits.get(0).getTimestamp();
+        }
+        depth += hits.size();
+        return true;
+    }
+
+    public synchronized long getDepth() {
+        return depth;
+    }
+
+    public synchronized long getBytes() {
+        return segments.isEmpty() ? 0 : writeOffset - segments.firstKey();
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        if (replayer != null) {
+            replayer.interrupt();
+        }
+        synchronized (this) {
+            for (FileChannel channel : segments.values()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Не удалось закрыть сегмент очереди обращений", e);
+                }
+            }
+        }
+    }
+
+    private void runReplayer() {
+        long backoff = replayIntervalMs;
+        while (running) {
+            try {
+                List<HitDto> batch = new ArrayList<>(batchSize);
+                long next;
+                synchronized (this) {
+                    next = read(readOffset, batchSize, batch);
+                }
+                if (batch.isEmpty()) {
+                    Thread.sleep(replayIntervalMs);
+                    continue;
+                }
+                int dropped;
+                try {
+                    dropped = hitBatchSender.send(batch);
+                } catch (UndeliveredHitsException e) {
+                    skipDelivered(batch.size() - e.getRemainder().size(), e.getDropped());
+                    log.debug("Сервер статистики недоступен, повтор через {} мс: {}", backoff, e.getMessage());
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoffMs);
+                    continue;
+                }
+                backoff = replayIntervalMs;
+                commit(next, batch.size());
+                replayed.increment(batch.size() - dropped);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка чтения очереди обращений на диске", e);
+                sleepQuietly(maxBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * Сдвигает позицию за начало пакета, которое сервер уже принял или отверг до временной ошибки,
+     * чтобы при повторе эти обращения не ушли второй раз.
+     */
+    private void skipDelivered(int count, int dropped) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        long next;
+        synchronized (this) {
+            next = read(readOffset, count, new ArrayList<>(count));
+        }
+        commit(next, count);
+        replayed.increment(count - dropped);
+    }
+
+    private synchronized void commit(long next, int count) throws IOException {
+        readOffset = next;
+        depth -= count;
+        Path tmp = dir.resolve(POSITION + ".tmp");
+        Files.write(tmp, ByteBuffer.allocate(Long.BYTES).putLong(readOffset).array());
+        Files.move(tmp, dir.resolve(POSITION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (readOffset == writeOffset && writeOffset > segments.lastKey()) {
+            segments.put(writeOffset, openSegment(writeOffset));
+        }
+        while (segments.size() > 1) {
+            Map.Entry<Long, FileChannel> first = segments.firstEntry();
+            if (segments.higherKey(first.getKey()) > readOffset) {
+                break;
+            }
+            segments.remove(first.getKey());
+            first.getValue().close();
+            Files.deleteIfExists(segmentPath(first.getKey()));
+        }
+        updateOldest();
+    }
+
+    /**
+     * Читает до max записей с offset и возвращает смещение сразу за последней прочитанной.
+     */
+    private long read(long offset, int max, List<HitDto> hits) throws IOException {
+        long next = offset;
+        while (hits.size() < max && next < writeOffset) {
+            Map.Entry<Long, FileChannel> segment = segments.floorEntry(next);
+            Long higher = segments.higherKey(segment.getKey());
+            long at = next - segment.getKey();
+            if (higher != null && next >= higher) {
+                next = higher;
+                continue;
+            }
+            byte[] record = readRecord(segment.getValue(), at);
+            if (record == null) {
+                if (higher == null) {
+                    throw new IOException("Повреждённая запись очереди обращений по смещению " + next);
+                }
+                next = higher;
+                continue;
+            }
+            hits.add(decode(record));
+            next += HEADER + record.length;
+        }
+        return next;
+    }
+
+    /**
+     * Находит конец последней целой записи в последнем сегменте и обрезает оборванный хвост.
+     */
+    private long recover(long from) throws IOException {
+        Map.Entry<Long, FileChannel> last = segments.lastEntry();
+        long at = from - last.getKey();
+        byte[] record;
+        while ((record = readRecord(last.getValue(), at)) != null) {
+            at += HEADER + record.length;
+        }
+        if (at < last.getValue().size()) {
+            log.warn("Очередь обращений обрезана до целой записи: {} -> {} байт", last.getValue().size(), at);
+            last.getValue().truncate(at);
+        }
+        return last.getKey() + at;
+    }
+
+    private byte[] readRecord(FileChannel channel, long at) throws IOException {
+        if (channel.size() - at < HEADER) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, at);
+        header.flip();
+        int length = header.getInt();
+        if (length <= 0 || length > channel.size() - at - HEADER) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        while (payload.hasRemaining()) {
+            if (channel.read(payload, at + HEADER + payload.position()) < 0) {
+                return null;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        return (int) crc.getValue() == header.getInt() ? payload.array() : null;
+    }
+
+    private void updateOldest() throws IOException {
+        List<HitDto> head = new ArrayList<>(1);
+        read(readOffset, 1, head);
+        oldest = head.isEmpty() ? null : head.get(0).getTimestamp();
+    }
+
+    private double oldestAgeSeconds() {
+        LocalDateTime timestamp = oldest;
+        return timestamp == null ? 0 : Duration.between(timestamp, LocalDateTime.now()).toSeconds();
+    }
+
+    private FileChannel openSegment(long base) throws IOException {
+        return FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] encode(HitDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HitDto decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            return HitDto.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одинаковых одновременных запросов: первый вызов с ключом выполняет запрос,
+ * остальные, пришедшие до его завершения, ждут и получают тот же результат (или ту же ошибку).
+ * Результат не кэшируется - после завершения следующий вызов снова идёт на сервер.
+ * Общий результат отдаётся всем ждущим, поэтому изменять его нельзя.
+ * Метрики: {name}.calls - выполненные запросы, {name}.saved - сэкономленные.
+ */
+class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter calls;
+    private final Counter saved;
+
+    SingleFlight(MeterRegistry meterRegistry, String name) {
+        this.calls = meterRegistry.counter(name + ".calls");
+        this.saved = meterRegistry.counter(name + ".saved");
+    }
+
+    V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            saved.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        calls.increment();
+        try {
+            V result = call.get();
+            created.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+}
@@ -1,65 +1,337 @@
 package ru.practicum;
 
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpHeaders;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.TreeSet;
 
 @Service
-@RequiredArgsConstructor
 public class StatClient {
 
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String APPROX_UNIQUE = "approx";
     private static final String BASE_URL = "http://stats-server:9090"; // пробовал через переменную в properties, но не подтягивается
-    private final WebClient webClient = WebClient.builder().build();
+    private static final ParameterizedTypeReference<List<ViewStatsDto>> VIEW_STATS_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<List<EntityStatsDto>> ENTITY_STATS_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+    private final WebClient webClient = WebClient.builder()
+            .codecs(codecs -> {
+                codecs.customCodecs().register(new Jackson2CborEncoder(StatCbor.createMapper()));
+                codecs.customCodecs().register(new Jackson2CborDecoder(StatCbor.createMapper()));
+            })
+            .build();
+
+    /**
+     * Обмен с сервером в бинарном формате application/cbor вместо JSON.
+     */
+    @Value("${stat.client.binary:false}")
+    private boolean binary;
+
+    /**
+     * Одинаковые одновременные запросы статистики выполняются одним обращением к серверу.
+     */
+    @Value("${stat.client.coalesce.enabled:true}")
+    private boolean coalesce;
+
+    /**
+     * Списки uris длиннее chunk-size делятся на части, которые запрашиваются параллельно,
+     * не более parallelism одновременно; часть длиннее post-threshold уходит телом POST /stats/query.
+     */
+    @Value("${stat.client.uris.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${stat.client.uris.parallelism:4}")
+    private int parallelism;
+
+    @Value("${stat.client.uris.post-threshold:100}")
+    private int postThreshold;
+
+    /**
+     * То же для списка ids в статистике сущностей.
+     */
+    @Value("${stat.client.ids.chunk-size:1000}")
+    private int idsChunkSize;
+
+    @Value("${stat.client.ids.parallelism:4}")
+    private int idsParallelism;
+
+    @Value("${stat.client.ids.post-threshold:200}")
+    private int idsPostThreshold;
+
+    private final SingleFlight<StatisticsKey, List<ViewStatsDto>> statisticsFlight;
+    private final SingleFlight<EntityStatisticsKey, List<EntityStatsDto>> entityStatisticsFlight;
+
+    public StatClient(MeterRegistry meterRegistry) {
+        this.statisticsFlight = new SingleFlight<>(meterRegistry, "stat.client.coalesce");
+        this.entityStatisticsFlight = new SingleFlight<>(meterRegistry, "stat.client.coalesce.entities");
+    }
 
     public ResponseEntity<Object> saveHit(HitDto dto) {
 
         return webClient.post()
                 .uri(BASE_URL + "/hit")
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .contentType(wireFormat())
                 .bodyValue(dto)
                 .retrieve()
                 .toEntity(Object.class)
                 .block();
     }
 
+    public ResponseEntity<Object> saveHits(List<HitDto> dtos) {
+
+        return webClient.post()
+                .uri(BASE_URL + "/hits")
+                .contentType(wireFormat())
+                .bodyValue(dtos)
+                .retrieve()
+                .toEntity(Object.class)
+                .block();
+    }
+
     public List<ViewStatsDto> getStatistics(LocalDateTime start,
                                             LocalDateTime end,
                                             List<String> urisList,
                                             boolean unique) {
-        String uri;
+        return requestStatistics(start, end, urisList, String.valueOf(unique));
+    }
+
+    public List<ViewStatsDto> getApproxUniqueStatistics(LocalDateTime start,
+                                                        LocalDateTime end,
+                                                        List<String> urisList) {
+        return requestStatistics(start, end, urisList, APPROX_UNIQUE);
+    }
+
+    public List<EntityStatsDto> getEntityStatistics(LocalDateTime start,
+                                                    LocalDateTime end,
+                                                    String route,
+                                                    List<Long> ids,
+                                                    boolean unique) {
+        List<Long> distinct = List.copyOf(new TreeSet<>(ids));
+        if (!coalesce) {
+            return fetchEntityStatistics(start, end, route, distinct, unique);
+        }
+        EntityStatisticsKey key = new EntityStatisticsKey(start.truncatedTo(ChronoUnit.SECONDS),
+                end.truncatedTo(ChronoUnit.SECONDS), route, distinct, unique);
+        return entityStatisticsFlight.execute(key, () -> fetchEntityStatistics(start, end, route, distinct, unique));
+    }
+
+    private List<EntityStatsDto> fetchEntityStatistics(LocalDateTime start,
+                                                       LocalDateTime end,
+                                                       String route,
+                                                       List<Long> ids,
+                                                       boolean unique) {
+        int size = Math.max(1, idsChunkSize);
+        if (ids.size() <= size) {
+            return requestEntityChunk(start, end, route, ids, unique).block();
+        }
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += size) {
+            chunks.add(ids.subList(from, Math.min(from + size, ids.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> requestEntityChunk(start, end, route, chunk, unique), Math.max(1, idsParallelism))
+                .flatMapIterable(part -> part)
+                .collectList()
+                .block();
+    }
+
+    /**
+     * Повторы из ids убраны до деления на части, поэтому части не пересекаются и их ответы просто склеиваются.
+     */
+    private Mono<List<EntityStatsDto>> requestEntityChunk(LocalDateTime start,
+                                                         LocalDateTime end,
+                                                         String route,
+                                                         List<Long> ids,
+                                                         boolean unique) {
+        if (ids.size() > idsPostThreshold) {
+            EntityStatsQueryDto query = EntityStatsQueryDto.builder()
+                    .start(start)
+                    .end(end)
+                    .route(route)
+                    .ids(ids)
+                    .unique(unique)
+                    .build();
+            return webClient.post()
+                    .uri(BASE_URL + "/stats/entities/query")
+                    .contentType(wireFormat())
+                    .accept(wireFormat())
+                    .bodyValue(query)
+                    .retrieve()
+                    .bodyToMono(ENTITY_STATS_LIST);
+        }
+        String uri = UriComponentsBuilder.fromHttpUrl(BASE_URL + "/stats/entities")
+                .queryParam("start", start.format(formatter))
+                .queryParam("end", end.format(formatter))
+                .queryParam("route", route)
+                .queryParam("ids", ids)
+                .queryParam("unique", unique)
+                .build()
+                .toUriString();
+
+        return webClient.get()
+                .uri(uri)
+                .accept(wireFormat())
+                .retrieve()
+                .bodyToMono(ENTITY_STATS_LIST);
+    }
+
+    /**
+     * Потоковое получение статистики в формате NDJSON: элементы приходят по мере чтения на сервере.
+     */
+    public Flux<ViewStatsDto> streamStatistics(LocalDateTime start,
+                                               LocalDateTime end,
+                                               List<String> urisList,
+                                               boolean unique) {
+        return webClient.get()
+                .uri(statisticsUri(start, end, urisList, String.valueOf(unique)))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(ViewStatsDto.class);
+    }
+
+    private List<ViewStatsDto> requestStatistics(LocalDateTime start,
+                                                 LocalDateTime end,
+                                                 List<String> urisList,
+                                                 String unique) {
+        if (!coalesce) {
+            return fetchStatistics(start, end, urisList, unique);
+        }
+        StatisticsKey key = new StatisticsKey(start.truncatedTo(ChronoUnit.SECONDS),
+                end.truncatedTo(ChronoUnit.SECONDS), List.copyOf(new TreeSet<>(urisList)), unique);
+        return statisticsFlight.execute(key, () -> fetchStatistics(start, end, urisList, unique));
+    }
+
+    private List<ViewStatsDto> fetchStatistics(LocalDateTime start,
+                                               LocalDateTime end,
+                                               List<String> urisList,
+                                               String unique) {
+        int size = Math.max(1, chunkSize);
+        if (urisList.size() <= size) {
+            return requestChunk(start, end, urisList, unique).block();
+        }
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < urisList.size(); from += size) {
+            chunks.add(urisList.subList(from, Math.min(from + size, urisList.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> requestChunk(start, end, chunk, unique), Math.max(1, parallelism))
+                .collectList()
+                .map(StatClient::merge)
+                .block();
+    }
+
+    private Mono<List<ViewStatsDto>> requestChunk(LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  List<String> urisList,
+                                                  String unique) {
+        if (urisList.size() > postThreshold) {
+            StatsQueryDto query = StatsQueryDto.builder()
+                    .start(start)
+                    .end(end)
+                    .uris(urisList)
+                    .unique(unique)
+                    .build();
+            return webClient.post()
+                    .uri(BASE_URL + "/stats/query")
+                    .contentType(wireFormat())
+                    .accept(wireFormat())
+                    .bodyValue(query)
+                    .retrieve()
+                    .bodyToMono(VIEW_STATS_LIST);
+        }
+        return webClient.get()
+                .uri(statisticsUri(start, end, urisList, unique))
+                .accept(wireFormat())
+                .retrieve()
+                .bodyToMono(VIEW_STATS_LIST);
+    }
+
+    /**
+     * Склеивает ответы частей в порядке убывания hits. Шаблоны из разных частей могут найти
+     * один и тот же URI, поэтому повторы отбрасываются.
+     */
+    private static List<ViewStatsDto> merge(List<List<ViewStatsDto>> parts) {
+        Map<List<String>, ViewStatsDto> rows = new LinkedHashMap<>();
+        for (List<ViewStatsDto> part : parts) {
+            part.forEach(row -> rows.putIfAbsent(Arrays.asList(row.getApp(), row.getUri()), row));
+        }
+        List<ViewStatsDto> merged = new ArrayList<>(rows.values());
+        merged.sort(Comparator.comparing(ViewStatsDto::getHits, Comparator.nullsLast(Comparator.reverseOrder())));
+        return merged;
+    }
+
+    private MediaType wireFormat() {
+        return binary ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON;
+    }
+
+    private String statisticsUri(LocalDateTime start,
+                                 LocalDateTime end,
+                                 List<String> urisList,
+                                 String unique) {
         if (urisList.isEmpty()) {
-            uri = UriComponentsBuilder.fromHttpUrl(BASE_URL + "/stats")
-                    .queryParam("start", start.format(formatter))
-                    .queryParam("end", end.format(formatter))
-                    .queryParam("unique", unique)
-                    .build()
-                    .toUriString();
-        } else {
-            uri = UriComponentsBuilder.fromHttpUrl(BASE_URL + "/stats")
+            return UriComponentsBuilder.fromHttpUrl(BASE_URL + "/stats")
                     .queryParam("start", start.format(formatter))
                     .queryParam("end", end.format(formatter))
-                    .queryParam("uris", urisList)
                     .queryParam("unique", unique)
                     .build()
                     .toUriString();
         }
+        return UriComponentsBuilder.fromHttpUrl(BASE_URL + "/stats")
+                .queryParam("start", start.format(formatter))
+                .queryParam("end", end.format(formatter))
+                .queryParam("uris", urisList)
+                .queryParam("unique", unique)
+                .build()
+                .toUriString();
+    }
 
-        return Objects.requireNonNull(webClient.get()
-                .uri(uri)
-                .accept(MediaType.APPLICATION_JSON)
-                .retrieve()
-                .toEntityList(ViewStatsDto.class)
-                .block()).getBody();
+    /**
+     * Ключ объединения: время с точностью до секунды, как оно уходит в запрос, и отсортированные uri без повторов.
+     */
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class StatisticsKey {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final List<String> uris;
+        private final String unique;
+    }
+
+    /**
+     * То же для статистики сущностей: маршрут и отсортированные id без повторов.
+     */
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class EntityStatisticsKey {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final String route;
+        private final List<Long> ids;
+        private final boolean unique;
     }
 }
@@ -0,0 +1,22 @@
+package ru.practicum;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Временная ошибка посреди отправки пакета: обращения до remainder уже приняты сервером
+ * или отброшены как отвергнутые (dropped), повторять нужно только remainder.
+ */
+@Getter
+public class UndeliveredHitsException extends RuntimeException {
+
+    private final List<HitDto> remainder;
+    private final int dropped;
+
+    public UndeliveredHitsException(List<HitDto> remainder, int dropped, RuntimeException cause) {
+        super("Не отправлено обращений: " + remainder.size() + ", " + cause.getMessage(), cause);
+        this.remainder = remainder;
+        this.dropped = dropped;
+    }
+}
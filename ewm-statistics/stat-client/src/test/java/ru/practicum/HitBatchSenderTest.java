@@ -0,0 +1,129 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Разбор ошибок отправки: 4xx изолирует отвергнутые обращения, временные ошибки пробрасываются
+ * с неотправленным хвостом пакета, и повторяется только он.
+ */
+class HitBatchSenderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<HitDto> delivered = new ArrayList<>();
+
+    @Test
+    void dropsOnlyRejectedHits() {
+        HitBatchSender sender = new HitBatchSender(server(HttpStatus.BAD_REQUEST), meterRegistry);
+        List<HitDto> batch = hits(10);
+        batch.set(3, hit("bad"));
+        batch.set(7, hit("bad"));
+
+        assertThat(sender.send(batch)).isEqualTo(2);
+        assertThat(delivered).hasSize(8).noneMatch(hit -> hit.getIp().equals("bad"));
+        assertThat(meterRegistry.counter("stat.client.hits.invalid").count()).isEqualTo(2);
+    }
+
+    @Test
+    void rethrowsTransientErrors() {
+        for (HttpStatus status : List.of(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.TOO_MANY_REQUESTS)) {
+            HitBatchSender sender = new HitBatchSender(server(status), meterRegistry);
+            List<HitDto> batch = List.of(hit("bad"));
+
+            assertThatThrownBy(() -> sender.send(batch))
+                    .isInstanceOf(UndeliveredHitsException.class)
+                    .hasCauseInstanceOf(WebClientResponseException.class)
+                    .extracting(e -> ((UndeliveredHitsException) e).getRemainder())
+                    .isEqualTo(batch);
+        }
+        assertThat(meterRegistry.counter("stat.client.hits.invalid").count()).isZero();
+    }
+
+    @Test
+    void reportsTailLeftAfterRejectionAndOutage() {
+        AtomicInteger calls = new AtomicInteger();
+        HitBatchSender sender = new HitBatchSender(server(HttpStatus.BAD_REQUEST, calls, 8), meterRegistry);
+        List<HitDto> batch = hits(10);
+        batch.set(3, hit("bad"));
+
+        assertThatThrownBy(() -> sender.send(batch))
+                .isInstanceOfSatisfying(UndeliveredHitsException.class, e -> {
+                    assertThat(e.getRemainder()).isEqualTo(batch.subList(4, 10));
+                    assertThat(e.getDropped()).isEqualTo(1);
+                });
+        assertThat(delivered).extracting(HitDto::getIp).containsExactly("10.0.0.0", "10.0.0.1", "10.0.0.2");
+    }
+
+    @Test
+    void retriesOnlyUndeliveredTail() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StatClient server = server(HttpStatus.BAD_REQUEST, calls, 8);
+        HitBatchSender batchSender = new HitBatchSender(server, meterRegistry);
+        HitSpool spool = new HitSpool(batchSender, meterRegistry, false, "unused", 256, 16, 500, 1000, 30000);
+        HitSender sender = new HitSender(server, batchSender, spool, meterRegistry,
+                true, 100, 5_000, 10, 1_000, 3, 1);
+        sender.start();
+        List<HitDto> batch = hits(10);
+        batch.set(3, hit("bad"));
+        batch.forEach(sender::send);
+        sender.stop();
+
+        assertThat(delivered).hasSize(9).doesNotHaveDuplicates().noneMatch(hit -> hit.getIp().equals("bad"));
+        assertThat(meterRegistry.counter("stat.client.hits.sent").count()).isEqualTo(9);
+        assertThat(meterRegistry.counter("stat.client.batches.retried").count()).isEqualTo(1);
+    }
+
+    private StatClient server(HttpStatus status) {
+        return server(status, new AtomicInteger(), 0);
+    }
+
+    /**
+     * Сервер отвечает status на любой пакет, где есть обращение с IP "bad", остальные пакеты принимает;
+     * на вызов номер unavailableCall он отвечает 503.
+     */
+    private StatClient server(HttpStatus status, AtomicInteger calls, int unavailableCall) {
+        return new StatClient(meterRegistry) {
+            @Override
+            public ResponseEntity<Object> saveHits(List<HitDto> dtos) {
+                if (calls.incrementAndGet() == unavailableCall) {
+                    throw WebClientResponseException.create(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                            "Service Unavailable", null, null, null);
+                }
+                if (dtos.stream().anyMatch(hit -> hit.getIp().equals("bad"))) {
+                    throw WebClientResponseException.create(status.value(), status.getReasonPhrase(),
+                            null, null, null);
+                }
+                delivered.addAll(dtos);
+                return ResponseEntity.ok().build();
+            }
+        };
+    }
+
+    private static List<HitDto> hits(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> hit("10.0.0." + i))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static HitDto hit(String ip) {
+        return HitDto.builder()
+                .app("test")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пропускная способность асинхронной отправки при разном batch.size против заглушки сервера,
+ * которая тратит на каждый запрос фиксированную задержку сети. Цифры пишутся в лог;
+ * проверяется, что все обращения доставлены и пакеты крупнее одного обращения быстрее.
+ */
+@Slf4j
+class HitSenderBenchmarkTest {
+
+    private static final int HITS = 1_000;
+    private static final long ROUND_TRIP_MS = 2;
+
+    @Test
+    void batchingRaisesThroughput() throws InterruptedException {
+        double single = measure(1);
+        double small = measure(10);
+        double large = measure(100);
+
+        log.info("Отправка {} обращений с задержкой {} мс на запрос: пакет 1 - {} обр/с, 10 - {} обр/с, 100 - {} обр/с",
+                HITS, ROUND_TRIP_MS, Math.round(single), Math.round(small), Math.round(large));
+        assertThat(small).isGreaterThan(single);
+        assertThat(large).isGreaterThan(single);
+    }
+
+    private double measure(int batchSize) throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AtomicInteger delivered = new AtomicInteger();
+        StatClient server = new StatClient(meterRegistry) {
+            @Override
+            public ResponseEntity<Object> saveHits(List<HitDto> dtos) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(ROUND_TRIP_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delivered.addAndGet(dtos.size());
+                return ResponseEntity.ok().build();
+            }
+        };
+        HitBatchSender batchSender = new HitBatchSender(server, meterRegistry);
+        HitSpool spool = new HitSpool(batchSender, meterRegistry, false, "unused", 256, 16, 500, 1000, 30000);
+        HitSender sender = new HitSender(server, batchSender, spool, meterRegistry,
+                true, HITS, 60_000, batchSize, 5, 3, 100);
+        sender.start();
+        long nanos = System.nanoTime();
+        for (int i = 0; i < HITS; i++) {
+            sender.send(HitDto.builder()
+                    .app("benchmark")
+                    .uri("/events/" + i)
+                    .ip("10.0." + (i >> 8 & 0xff) + "." + (i & 0xff))
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+        sender.stop();
+        nanos = System.nanoTime() - nanos;
+        assertThat(delivered.get()).isEqualTo(HITS);
+        return HITS * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Повтор очереди на диске: временные ошибки повторяются, отвергнутое обращение не останавливает очередь,
+ * а уже отправленное начало пакета при повторе не уходит второй раз.
+ */
+class HitSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsRejectedHitAndRetriesUnavailableServer() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<HitDto> delivered = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger outages = new AtomicInteger(2);
+        StatClient server = new StatClient(meterRegistry) {
+            @Override
+            public ResponseEntity<Object> saveHits(List<HitDto> dtos) {
+                if (outages.getAndDecrement() > 0) {
+                    throw WebClientResponseException.create(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                            "Service Unavailable", null, null, null);
+                }
+                if (dtos.stream().anyMatch(hit -> hit.getIp().equals("bad"))) {
+                    throw WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(),
+                            "Bad Request", null, null, null);
+                }
+                delivered.addAll(dtos);
+                return ResponseEntity.ok().build();
+            }
+        };
+        HitSpool spool = new HitSpool(new HitBatchSender(server, meterRegistry), meterRegistry,
+                true, dir.toString(), 1, 1, 500, 10, 20);
+        spool.open();
+        try {
+            assertThat(spool.append(List.of(hit("10.0.0.1"), hit("bad"), hit("10.0.0.2")))).isTrue();
+            awaitEmpty(spool);
+        } finally {
+            spool.close();
+        }
+
+        assertThat(spool.getDepth()).isZero();
+        assertThat(delivered).extracting(HitDto::getIp).containsExactly("10.0.0.1", "10.0.0.2");
+        assertThat(meterRegistry.counter("stat.client.hits.invalid").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("stat.client.spool.replayed").count()).isEqualTo(2);
+    }
+
+    @Test
+    void replaysOnlyTailLeftAfterRejectionAndOutage() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<HitDto> delivered = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger calls = new AtomicInteger();
+        StatClient server = new StatClient(meterRegistry) {
+            @Override
+            public ResponseEntity<Object> saveHits(List<HitDto> dtos) {
+                if (calls.incrementAndGet() == 8) {
+                    throw WebClientResponseException.create(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                            "Service Unavailable", null, null, null);
+                }
+                if (dtos.stream().anyMatch(hit -> hit.getIp().equals("bad"))) {
+                    throw WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(),
+                            "Bad Request", null, null, null);
+                }
+                delivered.addAll(dtos);
+                return ResponseEntity.ok().build();
+            }
+        };
+        HitSpool spool = new HitSpool(new HitBatchSender(server, meterRegistry), meterRegistry,
+                true, dir.toString(), 1, 1, 500, 10, 20);
+        List<HitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hits.add(hit(i == 3 ? "bad" : "10.0.0." + i));
+        }
+        spool.open();
+        try {
+            assertThat(spool.append(hits)).isTrue();
+            awaitEmpty(spool);
+        } finally {
+            spool.close();
+        }
+
+        assertThat(calls.get()).isGreaterThan(8);
+        assertThat(delivered).hasSize(9).doesNotHaveDuplicates().noneMatch(hit -> hit.getIp().equals("bad"));
+        assertThat(meterRegistry.counter("stat.client.spool.replayed").count()).isEqualTo(9);
+    }
+
+    private static void awaitEmpty(HitSpool spool) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (spool.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static HitDto hit(String ip) {
+        return HitDto.builder()
+                .app("test")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Приращение по (app, uri): hits - новые обращения, uniqueHits - IP, впервые обратившиеся к этому URI.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeDto {
+    private String app;
+    private String uri;
+    private Long hits;
+    private Long uniqueHits;
+}
@@ -0,0 +1,22 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Приращения счётчиков с прошлого курсора; cursor передаётся в следующий запрос как есть.
+ * Если hasMore, за курсором уже есть новые обращения и запрос стоит повторить сразу.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangesDto {
+    private String cursor;
+    private Boolean hasMore;
+    private List<ChangeDto> changes;
+}
@@ -0,0 +1,37 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запрос статистики сущностей в теле POST /stats/entities/query: те же параметры, что у GET /stats/entities,
+ * но длинный список ids не упирается в ограничения длины URL.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EntityStatsQueryDto {
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+
+    private String route;
+
+    private List<Long> ids;
+
+    private Long idFrom;
+
+    private Long idTo;
+
+    private boolean unique;
+}
@@ -0,0 +1,26 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ряды обращений в колоночном виде: общий массив начал бакетов и по массиву счётчиков на каждый URI,
+ * i-й счётчик относится к i-му бакету.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SeriesDto {
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private List<LocalDateTime> timestamps;
+
+    private List<UriSeriesDto> series;
+}
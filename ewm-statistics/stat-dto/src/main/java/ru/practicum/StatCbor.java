@@ -0,0 +1,55 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Бинарный формат обмена со stat-service (application/cbor). Время обращения передаётся
+ * числом секунд от эпохи вместо строки "yyyy-MM-dd HH:mm:ss"; JSON остаётся форматом по умолчанию.
+ */
+@UtilityClass
+public class StatCbor {
+
+    public ObjectMapper createMapper() {
+        return new ObjectMapper(new CBORFactory())
+                .registerModule(new JavaTimeModule())
+                .addMixIn(HitDto.class, HitDtoMixIn.class)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    abstract static class HitDtoMixIn {
+        @JsonSerialize(using = EpochSecondsSerializer.class)
+        @JsonDeserialize(using = EpochSecondsDeserializer.class)
+        private LocalDateTime timestamp;
+    }
+
+    static class EpochSecondsSerializer extends JsonSerializer<LocalDateTime> {
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider serializers)
+                throws IOException {
+            gen.writeNumber(value.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    static class EpochSecondsDeserializer extends JsonDeserializer<LocalDateTime> {
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return LocalDateTime.ofEpochSecond(parser.getLongValue(), 0, ZoneOffset.UTC);
+        }
+    }
+}
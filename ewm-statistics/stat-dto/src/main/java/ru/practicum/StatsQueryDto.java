@@ -0,0 +1,37 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запрос статистики в теле POST /stats/query: те же параметры, что у GET /stats,
+ * но длинный список uris не упирается в ограничения длины URL.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatsQueryDto {
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+
+    private List<String> uris;
+
+    @Builder.Default
+    private String unique = "false";
+
+    private String uriPrefix;
+
+    @Builder.Default
+    private String groupBy = "uri";
+}
@@ -0,0 +1,21 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Строка топа URI: hits - оценка сверху, истинное значение не меньше hits - error.
+ * В точном режиме error равен 0.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TopStatsDto {
+    private String app;
+    private String uri;
+    private Long hits;
+    private Long error;
+}
@@ -0,0 +1,16 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UriSeriesDto {
+    private String app;
+    private String uri;
+    private long[] hits;
+}
@@ -0,0 +1,188 @@
+package ru.practicum.bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сжатое множество неотрицательных int в духе Roaring: значения делятся на блоки
+ * по старшим 16 битам, разреженный блок хранится отсортированным массивом char,
+ * плотный (больше 4096 значений) - битовой картой на 65536 бит.
+ */
+public class RoaringBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+
+    private final TreeMap<Character, Container> containers = new TreeMap<>();
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        Container container = containers.get(high);
+        if (container == null) {
+            container = new Container();
+            containers.put(high, container);
+        }
+        container.add((char) value);
+    }
+
+    public boolean contains(int value) {
+        Container container = containers.get((char) (value >>> 16));
+        return container != null && container.contains((char) value);
+    }
+
+    public void or(RoaringBitmap other) {
+        for (Map.Entry<Character, Container> entry : other.containers.entrySet()) {
+            Container container = containers.get(entry.getKey());
+            if (container == null) {
+                containers.put(entry.getKey(), entry.getValue().copy());
+            } else {
+                container.or(entry.getValue());
+            }
+        }
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers.values()) {
+            cardinality += container.cardinality;
+        }
+        return cardinality;
+    }
+
+    public byte[] toBytes() {
+        int size = Integer.BYTES;
+        for (Container container : containers.values()) {
+            size += Character.BYTES + 1 + Integer.BYTES + container.payloadSize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(containers.size());
+        for (Map.Entry<Character, Container> entry : containers.entrySet()) {
+            Container container = entry.getValue();
+            buffer.putChar(entry.getKey());
+            buffer.put(container.bitmap != null ? BITMAP : ARRAY);
+            buffer.putInt(container.cardinality);
+            if (container.bitmap != null) {
+                for (long word : container.bitmap) {
+                    buffer.putLong(word);
+                }
+            } else {
+                for (int i = 0; i < container.cardinality; i++) {
+                    buffer.putChar(container.array[i]);
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap result = new RoaringBitmap();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            char high = buffer.getChar();
+            byte type = buffer.get();
+            Container container = new Container();
+            container.cardinality = buffer.getInt();
+            if (type == BITMAP) {
+                container.bitmap = new long[BITMAP_WORDS];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    container.bitmap[w] = buffer.getLong();
+                }
+                container.array = null;
+            } else {
+                container.array = new char[Math.max(container.cardinality, 4)];
+                for (int j = 0; j < container.cardinality; j++) {
+                    container.array[j] = buffer.getChar();
+                }
+            }
+            result.containers.put(high, container);
+        }
+        return result;
+    }
+
+    private static class Container {
+        private char[] array = new char[4];
+        private long[] bitmap;
+        private int cardinality;
+
+        void add(char low) {
+            if (bitmap != null) {
+                setBit(low);
+                return;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, low);
+            if (index >= 0) {
+                return;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                setBit(low);
+                return;
+            }
+            int position = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(array.length * 2, ARRAY_MAX));
+            }
+            System.arraycopy(array, position, array, position + 1, cardinality - position);
+            array[position] = low;
+            cardinality++;
+        }
+
+        boolean contains(char low) {
+            if (bitmap != null) {
+                return (bitmap[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+
+        void or(Container other) {
+            if (other.bitmap != null) {
+                if (bitmap == null) {
+                    toBitmap();
+                }
+                int total = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    bitmap[w] |= other.bitmap[w];
+                    total += Long.bitCount(bitmap[w]);
+                }
+                cardinality = total;
+                return;
+            }
+            for (int i = 0; i < other.cardinality; i++) {
+                add(other.array[i]);
+            }
+        }
+
+        Container copy() {
+            Container copy = new Container();
+            copy.cardinality = cardinality;
+            copy.array = array != null ? array.clone() : null;
+            copy.bitmap = bitmap != null ? bitmap.clone() : null;
+            return copy;
+        }
+
+        int payloadSize() {
+            return bitmap != null ? BITMAP_WORDS * Long.BYTES : cardinality * Character.BYTES;
+        }
+
+        private void setBit(char low) {
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                bitmap[low >>> 6] |= mask;
+                cardinality++;
+            }
+        }
+
+        private void toBitmap() {
+            bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+    }
+}
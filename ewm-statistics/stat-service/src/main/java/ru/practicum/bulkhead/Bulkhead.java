@@ -0,0 +1,83 @@
+package ru.practicum.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.exception.ServiceUnavailableException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Отдельный пул потоков для одного вида нагрузки: не больше concurrency задач одновременно
+ * и не больше queue в очереди, сверх этого запрос сразу отклоняется с 503.
+ * В выключенном состоянии задача выполняется в потоке вызывающего, как без bulkhead.
+ */
+@Slf4j
+public class Bulkhead {
+
+    private final String name;
+    private final boolean enabled;
+    private final int capacity;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public Bulkhead(String name,
+                    Workload workload,
+                    boolean enabled,
+                    int concurrency,
+                    int queue,
+                    MeterRegistry registry) {
+        this.name = name;
+        this.enabled = enabled;
+        this.capacity = concurrency + queue;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)),
+                task -> new Thread(workload.bind(task), "stat-" + name + "-" + counter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rejected = Counter.builder("stat.bulkhead.rejected").tag("pool", name).register(registry);
+        ExecutorServiceMetrics.monitor(registry, executor, "stat.bulkhead." + name);
+        Gauge.builder("stat.bulkhead.saturation", this::saturation).tag("pool", name).register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Пул {} переполнен: выполняется {}, в очереди {}", name,
+                    executor.getActiveCount(), executor.getQueue().size());
+            throw new ServiceUnavailableException("Пул " + name + " переполнен, повторите запрос позже.");
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Доля занятых мест: выполняющиеся и ожидающие задачи относительно concurrency + queue.
+     */
+    private double saturation() {
+        return (double) (executor.getActiveCount() + executor.getQueue().size()) / capacity;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Пулы записи обращений и запросов статистики, чтобы тяжёлые выборки не забирали потоки у записи и наоборот.
+ */
+@Component
+public class Bulkheads {
+
+    private final Bulkhead ingest;
+    private final Bulkhead query;
+
+    public Bulkheads(MeterRegistry meterRegistry,
+                     @Value("${stat.bulkhead.enabled:false}") boolean enabled,
+                     @Value("${stat.bulkhead.ingest.concurrency:16}") int ingestConcurrency,
+                     @Value("${stat.bulkhead.ingest.queue:1000}") int ingestQueue,
+                     @Value("${stat.bulkhead.query.concurrency:4}") int queryConcurrency,
+                     @Value("${stat.bulkhead.query.queue:20}") int queryQueue) {
+        this.ingest = new Bulkhead("ingest", Workload.INGEST, enabled, ingestConcurrency, ingestQueue, meterRegistry);
+        this.query = new Bulkhead("query", Workload.QUERY, enabled, queryConcurrency, queryQueue, meterRegistry);
+    }
+
+    public Bulkhead ingest() {
+        return ingest;
+    }
+
+    public Bulkhead query() {
+        return query;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ingest.shutdown();
+        query.shutdown();
+    }
+}
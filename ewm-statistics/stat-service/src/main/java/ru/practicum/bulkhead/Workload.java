@@ -0,0 +1,32 @@
+package ru.practicum.bulkhead;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Вид нагрузки текущего потока: по нему {@link WorkloadRoutingDataSource} выбирает пул соединений.
+ * Потоки пулов bulkhead помечены явно, остальные считаются запросами, если их транзакция только на чтение.
+ */
+public enum Workload {
+    INGEST,
+    QUERY;
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        if (workload != null) {
+            return workload;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? QUERY : INGEST;
+    }
+
+    /**
+     * Оборачивает тело потока так, что весь поток выполняется с этим видом нагрузки.
+     */
+    public Runnable bind(Runnable task) {
+        return () -> {
+            CURRENT.set(this);
+            task.run();
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.bulkhead;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Направляет соединение в пул записи или чтения по {@link Workload#current()}.
+ * Должен стоять за LazyConnectionDataSourceProxy: признак readOnly транзакции
+ * становится известен только после того, как менеджер транзакций запросил соединение.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Workload.current();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.StatCbor;
+
+import java.util.List;
+
+/**
+ * Принимает и отдаёт application/cbor по Content-Type и Accept. Конвертер добавляется
+ * последним, поэтому без явного запроса бинарного формата ответы остаются в JSON.
+ */
+@Configuration
+public class CborConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2CborHttpMessageConverter(StatCbor.createMapper()));
+    }
+}
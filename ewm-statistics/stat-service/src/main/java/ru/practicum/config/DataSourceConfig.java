@@ -0,0 +1,53 @@
+package ru.practicum.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.practicum.bulkhead.Workload;
+import ru.practicum.bulkhead.WorkloadRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Раздельные пулы соединений для записи обращений и для запросов статистики поверх одной БД.
+ * Пулы видны в actuator как hikaricp.connections.* с pool=ingest и pool=query.
+ */
+@Configuration
+@ConditionalOnProperty(name = "stat.bulkhead.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Bean
+    public HikariDataSource ingestDataSource(DataSourceProperties properties,
+                                             @Value("${stat.bulkhead.ingest.pool-size:10}") int poolSize) {
+        return pool(properties, "ingest", poolSize);
+    }
+
+    @Bean
+    public HikariDataSource queryDataSource(DataSourceProperties properties,
+                                            @Value("${stat.bulkhead.query.pool-size:10}") int poolSize) {
+        return pool(properties, "query", poolSize);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource ingestDataSource, HikariDataSource queryDataSource) {
+        WorkloadRoutingDataSource routing = new WorkloadRoutingDataSource();
+        routing.setTargetDataSources(Map.of(Workload.INGEST, ingestDataSource, Workload.QUERY, queryDataSource));
+        routing.setDefaultTargetDataSource(ingestDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String name, int poolSize) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.practicum.config;
+
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.repository.HitSchemaMigration;
+
+import javax.sql.DataSource;
+
+/**
+ * Заменяет стандартную инициализацию схемы: перед schema.sql таблица hits прежних версий
+ * приводится к текущему виду (см. {@link HitSchemaMigration}).
+ */
+@Configuration
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+public class SchemaConfig {
+
+    @Bean
+    public SqlDataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(
+            DataSource dataSource, SqlInitializationProperties properties) {
+        return new SqlDataSourceScriptDatabaseInitializer(dataSource, properties) {
+            @Override
+            public boolean initializeDatabase() {
+                new HitSchemaMigration(dataSource).migrate();
+                return super.initializeDatabase();
+            }
+        };
+    }
+}
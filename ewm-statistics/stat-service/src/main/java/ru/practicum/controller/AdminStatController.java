@@ -0,0 +1,55 @@
+package ru.practicum.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.service.BitmapStatService;
+import ru.practicum.service.RollupService;
+import ru.practicum.storage.HitStorage;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping(path = "/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminStatController {
+
+    private final RollupService rollupService;
+    private final BitmapStatService bitmapStatService;
+    private final HitStorage hitStorage;
+
+    @PostMapping("/rollups/rebuild")
+    public void rebuildRollups(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                               LocalDateTime start,
+                               @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                               LocalDateTime end) {
+        log.info("Пересчитать агрегаты c {} по {}", start, end);
+        checkTime(start, end);
+        rollupService.rebuild(start, end);
+    }
+
+    @PostMapping("/bitmaps/rebuild")
+    public void rebuildBitmaps(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                               LocalDateTime start,
+                               @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                               LocalDateTime end) {
+        log.info("Пересчитать битовые карты посетителей c {} по {}", start, end);
+        checkTime(start, end);
+        bitmapStatService.rebuild(start, end);
+    }
+
+    private void checkTime(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            throw new ValidationException("Время окончания: " + end + " не может быть раньше начала: " + start);
+        }
+        if (!hitStorage.isTable()) {
+            throw new ValidationException("Пересчёт читает таблицу hits и недоступен при stat.storage.engine=file");
+        }
+    }
+}
@@ -1,41 +1,283 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ChangesDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
 import ru.practicum.HitDto;
+import ru.practicum.SeriesDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.TopStatsDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.bulkhead.Bulkheads;
+import ru.practicum.dictionary.UriIndex;
+import ru.practicum.enums.Granularity;
+import ru.practicum.enums.Route;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.service.ChangesService;
+import ru.practicum.service.SeriesService;
 import ru.practicum.service.StatServiceImpl;
+import ru.practicum.service.TopStatService;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
 @Slf4j
 public class StatController {
 
+    private static final String APPROX = "approx";
+    private static final String GROUP_BY_URI = "uri";
+    private static final String GROUP_BY_PREFIX = "prefix";
+
     private final StatServiceImpl statService;
+    private final TopStatService topStatService;
+    private final SeriesService seriesService;
+    private final ChangesService changesService;
+    private final ObjectMapper objectMapper;
+    private final Bulkheads bulkheads;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
-    public void saveHit(@RequestBody HitDto hitDto) {
+    public CompletableFuture<Void> saveHit(@RequestBody HitDto hitDto) {
         log.info("Сохранить в статистику обращение: {}", hitDto);
-        statService.saveHit(hitDto);
+        return bulkheads.ingest().submit(() -> {
+            statService.saveHit(hitDto);
+            return null;
+        });
+    }
+
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<Void> saveHits(@RequestBody List<HitDto> hitDtos) {
+        log.info("Сохранить в статистику пакет обращений, размер: {}", hitDtos.size());
+        return bulkheads.ingest().submit(() -> {
+            statService.saveHits(hitDtos);
+            return null;
+        });
     }
 
     @GetMapping("/stats")
-    public List<ViewStatsDto> getStatistics(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-                                            LocalDateTime start,
-                                            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-                                            LocalDateTime end,
-                                            @RequestParam(required = false) List<String> uris,
-                                            @RequestParam(defaultValue = "false") boolean unique) {
+    public CompletableFuture<List<ViewStatsDto>> getStatistics(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") String unique,
+            @RequestParam(required = false) String uriPrefix,
+            @RequestParam(defaultValue = GROUP_BY_URI) String groupBy) {
         log.info("Получить статистику c {} по {}", start, end);
-        List<ViewStatsDto> viewStatsDtos = statService.getStatistics(start, end, uris, unique);
-        log.info("Статистика c {} по {} получена", start, end);
-        return viewStatsDtos;
+        return statistics(start, end, uris, unique, uriPrefix, groupBy);
+    }
+
+    /**
+     * То же, что GET /stats, но параметры в теле запроса - для списков uris, не влезающих в URL.
+     */
+    @PostMapping("/stats/query")
+    public CompletableFuture<List<ViewStatsDto>> queryStatistics(@RequestBody StatsQueryDto query) {
+        if (query.getStart() == null || query.getEnd() == null) {
+            throw new ValidationException("Параметры start и end обязательны");
+        }
+        log.info("Получить статистику c {} по {}, URI в запросе: {}", query.getStart(), query.getEnd(),
+                query.getUris() != null ? query.getUris().size() : 0);
+        return statistics(query.getStart(), query.getEnd(), query.getUris(), query.getUnique(),
+                query.getUriPrefix(), query.getGroupBy());
+    }
+
+    /**
+     * Потоковая выдача статистики в формате NDJSON: строки пишутся в ответ по мере чтения курсора БД.
+     * Выгрузка целиком выполняется задачей пула запросов, так что место в пуле занято до последней строки,
+     * а при переполненном пуле запрос отклоняется с 503, как остальные запросы статистики.
+     * Точный подсчёт, поэтому unique=approx здесь означает unique=true.
+     */
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<Void> streamStatistics(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                                    LocalDateTime start,
+                                                    @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                                    LocalDateTime end,
+                                                    @RequestParam(required = false) List<String> uris,
+                                                    @RequestParam(defaultValue = "false") String unique,
+                                                    HttpServletResponse response) {
+        log.info("Получить потоком статистику c {} по {}", start, end);
+        checkTime(start, end);
+        boolean distinct = APPROX.equalsIgnoreCase(unique) || parseUnique(unique);
+        return bulkheads.query().submit(() -> {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            try {
+                OutputStream out = response.getOutputStream();
+                statService.streamStatistics(start, end, uris, distinct, viewStats -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(viewStats));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.info("Статистика c {} по {} выгружена потоком", start, end);
+            return null;
+        });
+    }
+
+    @GetMapping("/stats/top")
+    public CompletableFuture<List<TopStatsDto>> getTop(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                                       LocalDateTime start,
+                                                       @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                                       LocalDateTime end,
+                                                       @RequestParam(defaultValue = "10") int limit,
+                                                       @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Получить топ {} URI c {} по {}", limit, start, end);
+        checkTime(start, end);
+        if (limit <= 0) {
+            throw new ValidationException("Параметр limit должен быть положительным, получено: " + limit);
+        }
+        return bulkheads.query().submit(() -> topStatService.getTop(start, end, limit, unique));
+    }
+
+    @GetMapping("/stats/series")
+    public CompletableFuture<SeriesDto> getSeries(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                                  LocalDateTime start,
+                                                  @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+                                                  LocalDateTime end,
+                                                  @RequestParam(defaultValue = "hour") String step,
+                                                  @RequestParam(required = false) List<String> uris,
+                                                  @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Получить ряд обращений c {} по {} с шагом {}", start, end, step);
+        checkTime(start, end);
+        Granularity granularity = parseStep(step);
+        return bulkheads.query().submit(() -> seriesService.getSeries(start, end, granularity, uris, unique));
+    }
+
+    /**
+     * Приращения счётчиков с курсора; без курсора лента начинается с первого обращения.
+     */
+    @GetMapping("/stats/changes")
+    public CompletableFuture<ChangesDto> getChanges(@RequestParam(required = false) String cursor) {
+        log.info("Получить изменения статистики после курсора {}", cursor);
+        return bulkheads.query().submit(() -> changesService.getChanges(cursor));
+    }
+
+    @GetMapping("/stats/entities")
+    public CompletableFuture<List<EntityStatsDto>> getEntityStatistics(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam String route,
+            @RequestParam(required = false) List<Long> ids,
+            @RequestParam(required = false) Long idFrom,
+            @RequestParam(required = false) Long idTo,
+            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Получить статистику маршрута {} c {} по {}", route, start, end);
+        Route parsed = Route.from(route);
+        return bulkheads.query().submit(() ->
+                statService.getEntityStatistics(start, end, parsed, ids, idFrom, idTo, unique));
+    }
+
+    /**
+     * То же, что GET /stats/entities, но параметры в теле запроса - для списков ids, не влезающих в URL.
+     */
+    @PostMapping("/stats/entities/query")
+    public CompletableFuture<List<EntityStatsDto>> queryEntityStatistics(@RequestBody EntityStatsQueryDto query) {
+        if (query.getStart() == null || query.getEnd() == null || query.getRoute() == null) {
+            throw new ValidationException("Параметры start, end и route обязательны");
+        }
+        log.info("Получить статистику маршрута {} c {} по {}, идентификаторов в запросе: {}", query.getRoute(),
+                query.getStart(), query.getEnd(), query.getIds() != null ? query.getIds().size() : 0);
+        Route parsed = Route.from(query.getRoute());
+        return bulkheads.query().submit(() -> statService.getEntityStatistics(query.getStart(), query.getEnd(),
+                parsed, query.getIds(), query.getIdFrom(), query.getIdTo(), query.isUnique()));
+    }
+
+    private CompletableFuture<List<ViewStatsDto>> statistics(LocalDateTime start,
+                                                             LocalDateTime end,
+                                                             List<String> uris,
+                                                             String unique,
+                                                             String uriPrefix,
+                                                             String groupBy) {
+        List<String> patterns = patterns(uris, uriPrefix);
+        boolean approx = APPROX.equalsIgnoreCase(unique);
+        boolean distinct = approx || parseUnique(unique);
+        boolean grouped = parseGroupBy(groupBy);
+        return bulkheads.query().submit(() -> {
+            List<ViewStatsDto> viewStatsDtos;
+            if (patterns != null) {
+                viewStatsDtos = statService.getPatternStatistics(start, end, patterns, distinct, grouped);
+            } else if (approx) {
+                viewStatsDtos = statService.getApproxUniqueStatistics(start, end, uris);
+            } else {
+                viewStatsDtos = statService.getStatistics(start, end, uris, distinct);
+            }
+            log.info("Статистика c {} по {} получена", start, end);
+            return viewStatsDtos;
+        });
+    }
+
+    /**
+     * Шаблоны URI запроса: uriPrefix превращается в "префикс*", остальные uris идут как есть.
+     * Если ни префикса, ни звёздочки в uris нет, возвращает null - это обычный запрос по списку URI.
+     */
+    private List<String> patterns(List<String> uris, String uriPrefix) {
+        boolean wildcard = uris != null && uris.stream().anyMatch(UriIndex::isPattern);
+        if (uriPrefix == null && !wildcard) {
+            return null;
+        }
+        List<String> patterns = new ArrayList<>();
+        if (uris != null) {
+            patterns.addAll(uris);
+        }
+        if (uriPrefix != null) {
+            if (uriPrefix.isBlank()) {
+                throw new ValidationException("Параметр uriPrefix не может быть пустым");
+            }
+            patterns.add(uriPrefix + "*");
+        }
+        return patterns;
+    }
+
+    private boolean parseGroupBy(String groupBy) {
+        if (GROUP_BY_PREFIX.equalsIgnoreCase(groupBy)) {
+            return true;
+        }
+        if (GROUP_BY_URI.equalsIgnoreCase(groupBy)) {
+            return false;
+        }
+        throw new ValidationException("Параметр groupBy должен быть uri или prefix, получено: " + groupBy);
+    }
+
+    private boolean parseUnique(String unique) {
+        if (!"true".equalsIgnoreCase(unique) && !"false".equalsIgnoreCase(unique)) {
+            throw new ValidationException("Параметр unique должен быть true, false или approx, получено: " + unique);
+        }
+        return Boolean.parseBoolean(unique);
+    }
+
+    private Granularity parseStep(String step) {
+        if (Granularity.HOUR.getField().equalsIgnoreCase(step)) {
+            return Granularity.HOUR;
+        }
+        if (Granularity.DAY.getField().equalsIgnoreCase(step)) {
+            return Granularity.DAY;
+        }
+        throw new ValidationException("Параметр step должен быть hour или day, получено: " + step);
+    }
+
+    private void checkTime(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            throw new ValidationException("Время окончания: " + end + " не может быть раньше начала: " + start);
+        }
     }
 }
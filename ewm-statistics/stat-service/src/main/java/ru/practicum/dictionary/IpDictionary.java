@@ -0,0 +1,77 @@
+package ru.practicum.dictionary;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.repository.IpDictionaryRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сопоставляет IP-адресам плотные int-идентификаторы из ip_dictionary.
+ * В кэш попадают только идентификаторы из закоммиченных транзакций.
+ */
+@Component
+public class IpDictionary {
+
+    private final IpDictionaryRepository ipDictionaryRepository;
+    private final int cacheSize;
+    private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+    public IpDictionary(IpDictionaryRepository ipDictionaryRepository,
+                        @Value("${stat.dictionary.ip-cache-size:1000000}") int cacheSize) {
+        this.ipDictionaryRepository = ipDictionaryRepository;
+        this.cacheSize = cacheSize;
+    }
+
+    public Map<String, Integer> intern(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = collectCached(ips, ids);
+        if (!missing.isEmpty()) {
+            ipDictionaryRepository.insertAll(missing);
+            Map<String, Integer> created = ipDictionaryRepository.findIds(missing);
+            ids.putAll(created);
+            cacheAfterCommit(created);
+        }
+        return ids;
+    }
+
+    private Set<String> collectCached(Collection<String> ips, Map<String, Integer> ids) {
+        Set<String> missing = new HashSet<>();
+        for (String ip : ips) {
+            Integer id = cache.get(ip);
+            if (id != null) {
+                ids.put(ip, id);
+            } else {
+                missing.add(ip);
+            }
+        }
+        return missing;
+    }
+
+    private void cacheAfterCommit(Map<String, Integer> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache(ids);
+            }
+        });
+    }
+
+    private void cache(Map<String, Integer> ids) {
+        if (cache.size() + ids.size() > cacheSize) {
+            cache.clear();
+        }
+        cache.putAll(ids);
+    }
+}
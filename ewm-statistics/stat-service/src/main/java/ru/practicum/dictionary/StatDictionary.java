@@ -0,0 +1,135 @@
+package ru.practicum.dictionary;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.repository.DictionaryRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словари имён сервисов (apps) и URI (uris): в hits хранятся только их int-идентификаторы.
+ * Оба словаря кэшируются в памяти целиком, в кэш попадают только закоммиченные записи.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatDictionary {
+
+    private final DictionaryRepository dictionaryRepository;
+    private final Names apps = new Names("apps");
+    private final Names uris = new Names("uris");
+
+    public Map<String, Integer> internApps(Collection<String> names) {
+        return apps.intern(names);
+    }
+
+    public Map<String, Integer> internUris(Collection<String> names) {
+        return uris.intern(names);
+    }
+
+    public Map<String, Integer> findUriIds(Collection<String> names) {
+        return uris.findIds(names);
+    }
+
+    public Map<Integer, String> findAppNames(Collection<Integer> ids) {
+        return apps.findNames(ids);
+    }
+
+    public Map<Integer, String> findUris(Collection<Integer> ids) {
+        return uris.findNames(ids);
+    }
+
+    private class Names {
+        private final String table;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+        Names(String table) {
+            this.table = table;
+        }
+
+        Map<String, Integer> intern(Collection<String> values) {
+            Map<String, Integer> result = new HashMap<>();
+            Set<String> missing = new HashSet<>();
+            for (String value : values) {
+                Integer id = ids.get(value);
+                if (id != null) {
+                    result.put(value, id);
+                } else {
+                    missing.add(value);
+                }
+            }
+            if (!missing.isEmpty()) {
+                dictionaryRepository.insertAll(table, missing);
+                Map<String, Integer> created = dictionaryRepository.findIds(table, missing);
+                result.putAll(created);
+                cacheAfterCommit(created);
+            }
+            return result;
+        }
+
+        Map<String, Integer> findIds(Collection<String> values) {
+            Map<String, Integer> result = new HashMap<>();
+            Set<String> missing = new HashSet<>();
+            for (String value : values) {
+                Integer id = ids.get(value);
+                if (id != null) {
+                    result.put(value, id);
+                } else {
+                    missing.add(value);
+                }
+            }
+            if (!missing.isEmpty()) {
+                Map<String, Integer> found = dictionaryRepository.findIds(table, missing);
+                result.putAll(found);
+                cache(found);
+            }
+            return result;
+        }
+
+        Map<Integer, String> findNames(Collection<Integer> keys) {
+            Map<Integer, String> result = new HashMap<>();
+            Set<Integer> missing = new HashSet<>();
+            for (Integer key : keys) {
+                String name = names.get(key);
+                if (name != null) {
+                    result.put(key, name);
+                } else {
+                    missing.add(key);
+                }
+            }
+            if (!missing.isEmpty()) {
+                Map<Integer, String> found = dictionaryRepository.findNames(table, missing);
+                result.putAll(found);
+                found.forEach((id, name) -> cache(Map.of(name, id)));
+            }
+            return result;
+        }
+
+        private void cacheAfterCommit(Map<String, Integer> created) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                cache(created);
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache(created);
+                }
+            });
+        }
+
+        private void cache(Map<String, Integer> values) {
+            values.forEach((name, id) -> {
+                ids.put(name, id);
+                names.put(id, name);
+            });
+        }
+    }
+}
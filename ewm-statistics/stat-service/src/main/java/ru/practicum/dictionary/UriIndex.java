@@ -0,0 +1,77 @@
+package ru.practicum.dictionary;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.repository.DictionaryRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Отсортированный индекс словаря uris для фильтров по префиксу и шаблону со звёздочкой.
+ * Префикс находится поддиапазоном отсортированной карты, остаток шаблона проверяется только на нём.
+ * Перед поиском индекс дочитывает новые записи словаря по id с запасом REFRESH_OVERLAP:
+ * идентификаторы параллельных транзакций могут коммититься не по порядку.
+ */
+@Component
+@RequiredArgsConstructor
+public class UriIndex {
+
+    private static final String WILDCARD = "*";
+    private static final int REFRESH_OVERLAP = 1000;
+
+    private final DictionaryRepository dictionaryRepository;
+    private final ConcurrentSkipListMap<String, Integer> uris = new ConcurrentSkipListMap<>();
+    private int maxId;
+
+    public static boolean isPattern(String uri) {
+        return uri.contains(WILDCARD);
+    }
+
+    /**
+     * URI, подходящие под шаблон: "*" означает любую, в том числе пустую, последовательность символов.
+     * Строка без "*" совпадает только сама с собой.
+     */
+    public Map<String, Integer> match(String pattern) {
+        refresh();
+        int wildcard = pattern.indexOf(WILDCARD);
+        if (wildcard < 0) {
+            Integer id = uris.get(pattern);
+            return id != null ? Map.of(pattern, id) : Map.of();
+        }
+        String prefix = pattern.substring(0, wildcard);
+        NavigableMap<String, Integer> candidates = uris.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (wildcard == pattern.length() - 1) {
+            return new HashMap<>(candidates);
+        }
+        Pattern regex = toRegex(pattern);
+        Map<String, Integer> result = new HashMap<>();
+        candidates.forEach((uri, id) -> {
+            if (regex.matcher(uri).matches()) {
+                result.put(uri, id);
+            }
+        });
+        return result;
+    }
+
+    private synchronized void refresh() {
+        dictionaryRepository.findAfter("uris", Math.max(0, maxId - REFRESH_OVERLAP), (id, name) -> {
+            uris.put(name, id);
+            maxId = Math.max(maxId, id);
+        });
+    }
+
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : pattern.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
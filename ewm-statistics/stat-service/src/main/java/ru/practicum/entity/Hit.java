@@ -20,11 +20,19 @@ public class Hit {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    private String app;
+    @Column(name = "app_id")
+    private Integer appId;
 
-    private String uri;
+    @Column(name = "uri_id")
+    private Integer uriId;
 
-    private String ip;
+    private byte[] ip;
+
+    @Column(name = "route_id")
+    private Integer routeId;
+
+    @Column(name = "entity_id")
+    private Long entityId;
 
     @Column(name = "created")
     private LocalDateTime timestamp;
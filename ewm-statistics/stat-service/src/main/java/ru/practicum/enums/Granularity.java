@@ -0,0 +1,27 @@
+package ru.practicum.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum Granularity {
+    DAY("day", ChronoUnit.DAYS),
+    HOUR("hour", ChronoUnit.HOURS),
+    MINUTE("minute", ChronoUnit.MINUTES);
+
+    private final String field;
+    private final ChronoUnit unit;
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practicum.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum PartitionInterval {
+    DAY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MONTH(ChronoUnit.MONTHS, DateTimeFormatter.ofPattern("yyyyMM"));
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter suffixFormat;
+
+    public LocalDate floor(LocalDate date) {
+        return this == MONTH ? date.withDayOfMonth(1) : date;
+    }
+
+    public String suffix(LocalDate from) {
+        return from.format(suffixFormat);
+    }
+
+    public LocalDate parseSuffix(String suffix) {
+        return this == MONTH
+                ? LocalDate.parse(suffix + "01", DAY.suffixFormat)
+                : LocalDate.parse(suffix, suffixFormat);
+    }
+}
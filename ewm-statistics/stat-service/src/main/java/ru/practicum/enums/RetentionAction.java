@@ -0,0 +1,6 @@
+package ru.practicum.enums;
+
+public enum RetentionAction {
+    DROP,
+    DETACH
+}
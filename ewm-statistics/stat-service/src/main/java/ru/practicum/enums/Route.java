@@ -0,0 +1,57 @@
+package ru.practicum.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.practicum.exception.ValidationException;
+
+/**
+ * Известные шаблоны URI вида {@code /<сегмент>/{id}}: при сохранении обращения из них
+ * извлекаются идентификатор маршрута и числовой идентификатор сущности.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum Route {
+    EVENTS(1, "events");
+
+    private final int id;
+    private final String segment;
+
+    public String getPrefix() {
+        return "/" + segment + "/";
+    }
+
+    /**
+     * Возвращает маршрут, которому соответствует URI, или null, если URI не подходит ни под один шаблон.
+     */
+    public static Route match(String uri) {
+        for (Route route : values()) {
+            if (route.parseEntityId(uri) != null) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    public Long parseEntityId(String uri) {
+        String prefix = getPrefix();
+        if (uri == null || !uri.startsWith(prefix) || uri.length() == prefix.length()
+                || uri.length() - prefix.length() > 18) {
+            return null;
+        }
+        for (int i = prefix.length(); i < uri.length(); i++) {
+            if (!Character.isDigit(uri.charAt(i))) {
+                return null;
+            }
+        }
+        return Long.parseLong(uri.substring(prefix.length()));
+    }
+
+    public static Route from(String segment) {
+        for (Route route : values()) {
+            if (route.segment.equalsIgnoreCase(segment)) {
+                return route;
+            }
+        }
+        throw new ValidationException("Неизвестный маршрут: " + segment);
+    }
+}
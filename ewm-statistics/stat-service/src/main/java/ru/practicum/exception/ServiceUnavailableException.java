@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String s) {
+        super(s);
+    }
+}
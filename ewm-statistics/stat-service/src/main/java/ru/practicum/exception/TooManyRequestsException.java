@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+    public TooManyRequestsException(String s) {
+        super(s);
+    }
+}
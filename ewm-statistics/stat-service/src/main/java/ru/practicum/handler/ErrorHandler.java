@@ -1,11 +1,17 @@
 package ru.practicum.handler;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.practicum.ApiError;
+import ru.practicum.exception.ServiceUnavailableException;
+import ru.practicum.exception.TooManyRequestsException;
 import ru.practicum.exception.ValidationException;
 
 @RestControllerAdvice
@@ -22,4 +28,34 @@ public class ErrorHandler {
                 .message(e.getMessage())
                 .build();
     }
+
+    @Value("${stat.bulkhead.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ApiError handleTooManyRequestsException(final TooManyRequestsException e) {
+        log.warn("Получен статус 429 Too many requests: {}", e.getMessage());
+        return ApiError.builder()
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .reason("Сервис перегружен.")
+                .message(e.getMessage())
+                .build();
+    }
+
+    /**
+     * Переполненный пул bulkhead. Тип ответа задан явно: клиент потоковой выдачи принимает только NDJSON.
+     */
+    @ExceptionHandler
+    public ResponseEntity<ApiError> handleServiceUnavailableException(final ServiceUnavailableException e) {
+        log.warn("Получен статус 503 Service unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ApiError.builder()
+                        .status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .reason("Сервис перегружен.")
+                        .message(e.getMessage())
+                        .build());
+    }
 }
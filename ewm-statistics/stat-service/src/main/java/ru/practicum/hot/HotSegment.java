@@ -0,0 +1,90 @@
+package ru.practicum.hot;
+
+/**
+ * Сегмент горячего окна: столбцы времени (epoch millis), app, uri и ip в виде примитивных массивов.
+ * Пишет в сегмент только один поток под блокировкой хранилища; заполненный сегмент больше не меняется.
+ * Читатели видят строки до опубликованного через volatile размера.
+ */
+class HotSegment {
+
+    static final int ROW_BYTES = Long.BYTES + 3 * Integer.BYTES;
+
+    private final long[] times;
+    private final int[] apps;
+    private final int[] uris;
+    private final int[] ips;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private volatile int size;
+
+    HotSegment(int capacity) {
+        times = new long[capacity];
+        apps = new int[capacity];
+        uris = new int[capacity];
+        ips = new int[capacity];
+    }
+
+    boolean isSealed() {
+        return size == times.length;
+    }
+
+    void append(long time, int app, int uri, int ip) {
+        int row = size;
+        times[row] = time;
+        apps[row] = app;
+        uris[row] = uri;
+        ips[row] = ip;
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        size = row + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long maxTime() {
+        return maxTime;
+    }
+
+    long bytes() {
+        return (long) times.length * ROW_BYTES;
+    }
+
+    void scan(long from, long to, RowConsumer consumer) {
+        int rows = size;
+        if (rows == 0 || maxTime < from || minTime > to) {
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            long time = times[row];
+            if (time >= from && time <= to) {
+                consumer.accept(apps[row], uris[row], ips[row]);
+            }
+        }
+    }
+
+    void forEach(RowConsumer consumer) {
+        int rows = size;
+        for (int row = 0; row < rows; row++) {
+            consumer.accept(apps[row], uris[row], ips[row]);
+        }
+    }
+
+    /**
+     * Копия сегмента, в которой коды заменены по отображениям старый код -> новый.
+     */
+    HotSegment remap(int[] appCodes, int[] uriCodes, int[] ipCodes) {
+        HotSegment copy = new HotSegment(times.length);
+        int rows = size;
+        for (int row = 0; row < rows; row++) {
+            copy.append(times[row], appCodes[apps[row]], uriCodes[uris[row]], ipCodes[ips[row]]);
+        }
+        return copy;
+    }
+
+    @FunctionalInterface
+    interface RowConsumer {
+        void accept(int app, int uri, int ip);
+    }
+}
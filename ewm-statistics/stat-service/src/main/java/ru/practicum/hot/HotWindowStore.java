@@ -0,0 +1,477 @@
+package ru.practicum.hot;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.bitmap.RoaringBitmap;
+import ru.practicum.enums.Route;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.mapper.StatMapper;
+import ru.practicum.model.StatKey;
+import ru.practicum.repository.HotWindowRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Колоночное хранилище обращений за последние days дней в памяти процесса.
+ * Заполняется из БД при старте и дополняется закоммиченными обращениями, поэтому
+ * корректно, только пока этот экземпляр stat-service единственный пишет в hits.
+ * При превышении бюджета памяти старейшие сегменты вытесняются, и нижняя граница окна сдвигается.
+ * Для URI известных маршрутов словарь помнит идентификатор сущности, так что из окна отвечают и /stats/entities.
+ * Транзакция записи держит read-блокировку от onHits до своего завершения, а загрузка берёт write-блокировку:
+ * всё, что закоммичено до загрузки, попадает в её выборку, а всё, что после, - в окно через afterCommit.
+ */
+@Component
+@Slf4j
+public class HotWindowStore implements HitListener {
+
+    private static final long DICTIONARY_ENTRY_BYTES = 96;
+
+    private final HotWindowRepository hotWindowRepository;
+    private final boolean enabled;
+    private final int days;
+    private final int segmentSize;
+    private final long budgetBytes;
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+
+    private volatile Window window = new Window(List.of(), new Dictionary());
+    private volatile long lowWatermark = Long.MAX_VALUE;
+    private volatile boolean ready;
+
+    public HotWindowStore(HotWindowRepository hotWindowRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${stat.hot-window.enabled:false}") boolean enabled,
+                          @Value("${stat.hot-window.days:61}") int days,
+                          @Value("${stat.hot-window.segment-size:65536}") int segmentSize,
+                          @Value("${stat.hot-window.memory-budget-mb:256}") long budgetMb) {
+        this.hotWindowRepository = hotWindowRepository;
+        this.enabled = enabled;
+        this.days = days;
+        this.segmentSize = segmentSize;
+        this.budgetBytes = budgetMb * 1024 * 1024;
+        Gauge.builder("stat.hot-window.budget", () -> budgetBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("stat.hot-window.used", this::usedBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("stat.hot-window.rows", this::rows).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime from = LocalDateTime.now().minusDays(days);
+        lowWatermark = toMillis(from);
+        loadLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                hotWindowRepository.findHits(from, this::appendRow);
+                enforceBudget();
+            }
+            ready = true;
+            log.info("Горячее окно загружено: {} обращений c {}, занято {} байт", rows(), from, usedBytes());
+        } catch (DataAccessException e) {
+            window = new Window(List.of(), new Dictionary());
+            log.error("Не удалось загрузить горячее окно, статистика будет читаться из БД", e);
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Можно ли ответить на запрос из памяти: начало диапазона не раньше нижней границы окна.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return ready && !start.isAfter(end) && toMillis(start) >= lowWatermark;
+    }
+
+    /**
+     * Пока идёт загрузка, ждёт её окончания: иначе обращения, закоммиченные после выборки загрузки,
+     * не попали бы в окно. Блокировка отпускается после завершения транзакции записи.
+     */
+    @Override
+    public void onHits(List<HitDto> hits) {
+        if (!enabled) {
+            return;
+        }
+        loadLock.readLock().lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                appendIfReady(hits);
+            } finally {
+                loadLock.readLock().unlock();
+            }
+            return;
+        }
+        try {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appendIfReady(hits);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    loadLock.readLock().unlock();
+                }
+            });
+        } catch (RuntimeException e) {
+            loadLock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    public List<ViewStatsDto> getStatistics(LocalDateTime start,
+                                            LocalDateTime end,
+                                            List<String> uriNames,
+                                            boolean unique) {
+        Window snapshot = window;
+        BitSet uriFilter = null;
+        if (uriNames != null && !uriNames.isEmpty()) {
+            uriFilter = new BitSet();
+            for (String name : uriNames) {
+                Integer code = snapshot.dictionary.uris.find(name);
+                if (code != null) {
+                    uriFilter.set(code);
+                }
+            }
+            if (uriFilter.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        BitSet filter = uriFilter;
+        long from = toMillis(start);
+        long to = toMillis(end);
+        Map<Long, long[]> counts = new HashMap<>();
+        Map<Long, RoaringBitmap> visitors = new HashMap<>();
+        for (HotSegment segment : snapshot.segments) {
+            segment.scan(from, to, (app, uri, ip) -> {
+                if (filter != null && !filter.get(uri)) {
+                    return;
+                }
+                long key = ((long) app << 32) | uri;
+                if (unique) {
+                    visitors.computeIfAbsent(key, k -> new RoaringBitmap()).add(ip);
+                } else {
+                    counts.computeIfAbsent(key, k -> new long[1])[0]++;
+                }
+            });
+        }
+        Map<StatKey, Long> result = new HashMap<>();
+        counts.forEach((key, count) -> result.put(snapshot.dictionary.toStatKey(key), count[0]));
+        visitors.forEach((key, bitmap) -> result.put(snapshot.dictionary.toStatKey(key), bitmap.cardinality()));
+        return StatMapper.mapToViewStatsDto(result);
+    }
+
+    /**
+     * Обращения к сущностям маршрута, отобранным ids: сущность URI берётся из словаря,
+     * поэтому строки фильтруются по коду URI, как в {@link #getStatistics}.
+     */
+    public List<EntityStatsDto> getEntityStatistics(LocalDateTime start,
+                                                    LocalDateTime end,
+                                                    Route route,
+                                                    LongPredicate ids,
+                                                    boolean unique) {
+        Window snapshot = window;
+        Map<Integer, Long> uriEntities = new HashMap<>();
+        BitSet filter = new BitSet();
+        snapshot.dictionary.entities.get(route).forEach((uri, entity) -> {
+            if (ids.test(entity)) {
+                uriEntities.put(uri, entity);
+                filter.set(uri);
+            }
+        });
+        if (filter.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long from = toMillis(start);
+        long to = toMillis(end);
+        Map<Long, long[]> counts = new HashMap<>();
+        Map<Long, RoaringBitmap> visitors = new HashMap<>();
+        for (HotSegment segment : snapshot.segments) {
+            segment.scan(from, to, (app, uri, ip) -> {
+                if (!filter.get(uri)) {
+                    return;
+                }
+                Long entity = uriEntities.get(uri);
+                if (unique) {
+                    visitors.computeIfAbsent(entity, k -> new RoaringBitmap()).add(ip);
+                } else {
+                    counts.computeIfAbsent(entity, k -> new long[1])[0]++;
+                }
+            });
+        }
+        List<EntityStatsDto> result = new ArrayList<>();
+        counts.forEach((entity, count) -> result.add(new EntityStatsDto(entity, count[0])));
+        visitors.forEach((entity, bitmap) -> result.add(new EntityStatsDto(entity, bitmap.cardinality())));
+        result.sort(Comparator.comparing(EntityStatsDto::getId));
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stat.hot-window.evict-interval-ms:60000}")
+    public synchronized void evictExpired() {
+        if (!ready) {
+            return;
+        }
+        lowWatermark = Math.max(lowWatermark, toMillis(LocalDateTime.now().minusDays(days)));
+        List<HotSegment> kept = new ArrayList<>();
+        for (HotSegment segment : window.segments) {
+            if (!segment.isSealed() || segment.maxTime() >= lowWatermark) {
+                kept.add(segment);
+            } else {
+                release(segment);
+            }
+        }
+        if (kept.size() != window.segments.size()) {
+            log.info("Из горячего окна вытеснено устаревших сегментов: {}", window.segments.size() - kept.size());
+            window = new Window(List.copyOf(kept), window.dictionary);
+            compactIfSparse();
+        }
+    }
+
+    private synchronized void appendIfReady(List<HitDto> hits) {
+        if (!ready) {
+            return;
+        }
+        for (HitDto hit : hits) {
+            appendRow(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp());
+        }
+        enforceBudget();
+    }
+
+    private void appendRow(String app, String uri, String ip, LocalDateTime created) {
+        long time = toMillis(created);
+        if (time < lowWatermark) {
+            return;
+        }
+        List<HotSegment> segments = window.segments;
+        HotSegment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (current == null || current.isSealed()) {
+            current = new HotSegment(segmentSize);
+            List<HotSegment> next = new ArrayList<>(segments);
+            next.add(current);
+            window = new Window(List.copyOf(next), window.dictionary);
+        }
+        Dictionary dictionary = window.dictionary;
+        current.append(time, dictionary.apps.encode(app), dictionary.encodeUri(uri), dictionary.ips.encode(ip));
+    }
+
+    private void enforceBudget() {
+        while (usedBytes() > budgetBytes && window.segments.size() > 1) {
+            HotSegment oldest = window.segments.get(0);
+            lowWatermark = Math.max(lowWatermark, oldest.maxTime() + 1);
+            release(oldest);
+            window = new Window(List.copyOf(window.segments.subList(1, window.segments.size())), window.dictionary);
+            compactIfSparse();
+            log.warn("Горячее окно превысило бюджет памяти {} байт, нижняя граница сдвинута до {}",
+                    budgetBytes, LocalDateTime.ofEpochSecond(lowWatermark / 1000, 0, ZoneOffset.UTC));
+        }
+    }
+
+    private void release(HotSegment segment) {
+        Dictionary dictionary = window.dictionary;
+        segment.forEach((app, uri, ip) -> {
+            dictionary.apps.release(app);
+            dictionary.uris.release(uri);
+            dictionary.ips.release(ip);
+        });
+    }
+
+    /**
+     * Коды вытесненных строк освобождаются по счётчикам ссылок, но остаются занятыми, иначе пришлось бы
+     * перекодировать сегменты при каждом вытеснении. Когда свободных кодов больше, чем живых, словарь
+     * собирается заново, а сегменты копируются с новыми кодами; читатели дочитывают прежний снимок.
+     */
+    private void compactIfSparse() {
+        Dictionary dictionary = window.dictionary;
+        if (dictionary.dead() <= dictionary.live()) {
+            return;
+        }
+        Dictionary compacted = new Dictionary();
+        int[] appCodes = dictionary.apps.copyLive(compacted.apps::put);
+        int[] uriCodes = dictionary.uris.copyLive(compacted::putUri);
+        int[] ipCodes = dictionary.ips.copyLive(compacted.ips::put);
+        List<HotSegment> segments = new ArrayList<>(window.segments.size());
+        for (HotSegment segment : window.segments) {
+            segments.add(segment.remap(appCodes, uriCodes, ipCodes));
+        }
+        log.info("Словари горячего окна сжаты: {} -> {} строк", dictionary.size(), compacted.size());
+        window = new Window(List.copyOf(segments), compacted);
+    }
+
+    private long usedBytes() {
+        Window snapshot = window;
+        long bytes = snapshot.dictionary.size() * DICTIONARY_ENTRY_BYTES;
+        for (HotSegment segment : snapshot.segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+    private long rows() {
+        long rows = 0;
+        for (HotSegment segment : window.segments) {
+            rows += segment.size();
+        }
+        return rows;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Сегменты вместе со словарями, коды которых в них записаны: читатель берёт оба из одного снимка.
+     */
+    private static class Window {
+        private final List<HotSegment> segments;
+        private final Dictionary dictionary;
+
+        Window(List<HotSegment> segments, Dictionary dictionary) {
+            this.segments = segments;
+            this.dictionary = dictionary;
+        }
+    }
+
+    private static class Dictionary {
+        private final Codes apps = new Codes(true);
+        private final Codes uris = new Codes(true);
+        private final Codes ips = new Codes(false);
+        private final Map<Route, Map<Integer, Long>> entities = new EnumMap<>(Route.class);
+
+        Dictionary() {
+            for (Route route : Route.values()) {
+                entities.put(route, new ConcurrentHashMap<>());
+            }
+        }
+
+        int encodeUri(String uri) {
+            return putUri(uri, 1);
+        }
+
+        int putUri(String uri, int refs) {
+            boolean known = uris.find(uri) != null;
+            int code = uris.put(uri, refs);
+            if (!known) {
+                Route route = Route.match(uri);
+                if (route != null) {
+                    entities.get(route).put(code, route.parseEntityId(uri));
+                }
+            }
+            return code;
+        }
+
+        StatKey toStatKey(long key) {
+            return new StatKey(apps.decode((int) (key >>> 32)), uris.decode((int) key));
+        }
+
+        long size() {
+            return apps.size() + uris.size() + ips.size();
+        }
+
+        long live() {
+            return apps.live + uris.live + ips.live;
+        }
+
+        long dead() {
+            return size() - live();
+        }
+    }
+
+    /**
+     * Словарь строк в плотные коды со счётчиком ссылок из сегментов; меняется только под блокировкой хранилища.
+     */
+    private static class Codes {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+        private final boolean reversible;
+        private int[] refs = new int[16];
+        private int live;
+
+        Codes(boolean reversible) {
+            this.reversible = reversible;
+        }
+
+        int encode(String value) {
+            return put(value, 1);
+        }
+
+        int put(String value, int count) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == refs.length) {
+                    refs = Arrays.copyOf(refs, refs.length * 2);
+                }
+                if (reversible) {
+                    values.put(code, value);
+                }
+                codes.put(value, code);
+            }
+            if (refs[code] == 0) {
+                live++;
+            }
+            refs[code] += count;
+            return code;
+        }
+
+        void release(int code) {
+            if (--refs[code] == 0) {
+                live--;
+            }
+        }
+
+        /**
+         * Переносит строки с живыми кодами в другой словарь и возвращает отображение старых кодов в новые.
+         */
+        int[] copyLive(CodeSink sink) {
+            int[] mapping = new int[codes.size()];
+            codes.forEach((value, code) -> {
+                if (refs[code] > 0) {
+                    mapping[code] = sink.put(value, refs[code]);
+                }
+            });
+            return mapping;
+        }
+
+        Integer find(String value) {
+            return codes.get(value);
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return codes.size();
+        }
+    }
+
+    @FunctionalInterface
+    private interface CodeSink {
+        int put(String value, int refs);
+    }
+}
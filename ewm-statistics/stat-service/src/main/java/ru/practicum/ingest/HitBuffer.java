@@ -0,0 +1,217 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.HitDto;
+import ru.practicum.enums.OverflowPolicy;
+import ru.practicum.exception.TooManyRequestsException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind буфер обращений: обращения копятся в ограниченной очереди,
+ * отдельный поток сбрасывает их в БД пакетами по размеру или по времени.
+ * Постановка в очередь идёт под read-блокировкой, а остановка берёт write-блокировку,
+ * поэтому после начала остановки ни одно обращение не попадает в очередь мимо последнего сброса.
+ */
+@Component
+@Slf4j
+public class HitBuffer {
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final HitWriter hitWriter;
+    private final boolean enabled;
+    private final BlockingQueue<HitDto> queue;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final OverflowPolicy overflowPolicy;
+    private final long shutdownTimeoutMs;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final Counter flushedCounter;
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public HitBuffer(HitWriter hitWriter,
+                     MeterRegistry meterRegistry,
+                     @Value("${stat.write-behind.enabled:false}") boolean enabled,
+                     @Value("${stat.write-behind.capacity:10000}") int capacity,
+                     @Value("${stat.write-behind.flush-size:500}") int flushSize,
+                     @Value("${stat.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                     @Value("${stat.write-behind.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                     @Value("${stat.write-behind.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.hitWriter = hitWriter;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        Gauge.builder("stat.write-behind.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.droppedCounter = meterRegistry.counter("stat.write-behind.dropped");
+        this.rejectedCounter = meterRegistry.counter("stat.write-behind.rejected");
+        this.flushedCounter = meterRegistry.counter("stat.write-behind.flushed");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "hit-buffer-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-behind буфер обращений запущен, политика переполнения: {}", overflowPolicy);
+    }
+
+    /**
+     * Ставит обращение в очередь. Возвращает false, если буфер выключен или уже останавливается, -
+     * тогда обращение нужно записать напрямую.
+     */
+    public boolean add(HitDto hit) {
+        if (!enabled) {
+            return false;
+        }
+        stopLock.readLock().lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            enqueue(hit);
+            return true;
+        } finally {
+            stopLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Пока вызывающий держит read-блокировку, поток сброса работает, поэтому put при BLOCK не зависнет.
+     */
+    private void enqueue(HitDto hit) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(hit);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание места в буфере обращений прервано", e);
+                }
+                break;
+            case DROP:
+                if (!queue.offer(hit)) {
+                    droppedCounter.increment();
+                    log.warn("Буфер обращений переполнен, обращение отброшено: {}", hit);
+                }
+                break;
+            case REJECT:
+                if (!queue.offer(hit)) {
+                    rejectedCounter.increment();
+                    throw new TooManyRequestsException("Буфер обращений переполнен, повторите запрос позже.");
+                }
+                break;
+            default:
+                throw new IllegalStateException("Неизвестная политика переполнения: " + overflowPolicy);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        flusher.join(shutdownTimeoutMs);
+        if (flusher.isAlive()) {
+            log.error("Буфер обращений не успел сброситься за {} мс, осталось: {}", shutdownTimeoutMs, queue.size());
+        }
+    }
+
+    private void runFlusher() {
+        List<HitDto> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush(batch);
+        }
+        do {
+            queue.drainTo(batch, flushSize - batch.size());
+            flush(batch);
+        } while (!queue.isEmpty());
+        log.info("Буфер обращений сброшен перед остановкой");
+    }
+
+    private void collect(List<HitDto> batch) throws InterruptedException {
+        HitDto first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < flushSize) {
+            queue.drainTo(batch, flushSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0) {
+                break;
+            }
+            HitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<HitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int attempt = 0;
+        while (true) {
+            try {
+                hitWriter.write(batch);
+                flushedCounter.increment(batch.size());
+                batch.clear();
+                return;
+            } catch (RuntimeException e) {
+                attempt++;
+                if (!running && attempt >= SHUTDOWN_FLUSH_ATTEMPTS) {
+                    log.error("Не удалось сохранить пакет обращений при остановке, потеряно: {}", batch.size(), e);
+                    batch.clear();
+                    return;
+                }
+                log.error("Не удалось сохранить пакет обращений, размер: {}, повтор через {} мс",
+                        batch.size(), RETRY_DELAY_MS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
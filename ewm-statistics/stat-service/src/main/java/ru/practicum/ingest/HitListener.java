@@ -0,0 +1,13 @@
+package ru.practicum.ingest;
+
+import ru.practicum.HitDto;
+
+import java.util.List;
+
+/**
+ * Получает каждую пачку обращений, записанную в hits, в той же транзакции.
+ * IP-адреса в пачке уже приведены к каноническому виду.
+ */
+public interface HitListener {
+    void onHits(List<HitDto> hits);
+}
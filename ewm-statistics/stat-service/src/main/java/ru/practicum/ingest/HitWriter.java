@@ -0,0 +1,60 @@
+package ru.practicum.ingest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.HitDto;
+import ru.practicum.dictionary.StatDictionary;
+import ru.practicum.entity.Hit;
+import ru.practicum.mapper.StatMapper;
+import ru.practicum.repository.ChangesRepository;
+import ru.practicum.storage.HitStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+public class HitWriter {
+
+    private final HitStorage hitStorage;
+    private final StatDictionary statDictionary;
+    private final ChangesRepository changesRepository;
+    private final List<HitListener> listeners;
+    private final boolean ordered;
+
+    public HitWriter(HitStorage hitStorage,
+                     StatDictionary statDictionary,
+                     ChangesRepository changesRepository,
+                     List<HitListener> listeners,
+                     @Value("${stat.changes.enabled:false}") boolean ordered) {
+        this.hitStorage = hitStorage;
+        this.statDictionary = statDictionary;
+        this.changesRepository = changesRepository;
+        this.listeners = listeners;
+        this.ordered = ordered;
+    }
+
+    @Transactional
+    public void write(List<HitDto> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> appIds = statDictionary.internApps(hits.stream()
+                .map(HitDto::getApp)
+                .collect(Collectors.toSet()));
+        Map<String, Integer> uriIds = statDictionary.internUris(hits.stream()
+                .map(HitDto::getUri)
+                .collect(Collectors.toSet()));
+        List<Hit> rows = hits.stream()
+                .map(hit -> StatMapper.mapToHit(hit, appIds.get(hit.getApp()), uriIds.get(hit.getUri())))
+                .collect(Collectors.toList());
+        if (ordered) {
+            changesRepository.lockIngest();
+        }
+        hitStorage.append(rows);
+        for (HitListener listener : listeners) {
+            listener.onHits(hits);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.practicum.mapper;
+
+import lombok.experimental.UtilityClass;
+import ru.practicum.exception.ValidationException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+
+/**
+ * IPv4 хранится в 4 байтах, IPv6 - в 16.
+ * В InetAddress.getByName попадают только строки, похожие на IP-литерал: иначе он пошёл бы в DNS.
+ * Октеты IPv4 проверяются на 0-255 без ведущих нулей, строки с двоеточием JDK разбирает как IPv6 без DNS.
+ */
+@UtilityClass
+public class IpMapper {
+
+    private static final String OCTET = "(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)";
+    private static final Pattern IP_LITERAL = Pattern.compile("(" + OCTET + "\\.){3}" + OCTET
+            + "|[0-9a-fA-F:]*:[0-9a-fA-F:.]*");
+
+    public byte[] toBytes(String ip) {
+        if (ip == null || !IP_LITERAL.matcher(ip).matches()) {
+            throw new ValidationException("Некорректный IP-адрес: " + ip);
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            throw new ValidationException("Некорректный IP-адрес: " + ip);
+        }
+    }
+
+    public String toString(byte[] ip) {
+        try {
+            return InetAddress.getByAddress(ip).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Некорректная длина IP-адреса: " + ip.length, e);
+        }
+    }
+
+    public String normalize(String ip) {
+        return toString(toBytes(ip));
+    }
+}
@@ -2,18 +2,59 @@ package ru.practicum.mapper;
 
 import lombok.experimental.UtilityClass;
 import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
 import ru.practicum.entity.Hit;
+import ru.practicum.enums.Route;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.StatKey;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @UtilityClass
 public class StatMapper {
-    //private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public Hit mapToHit(HitDto dto) {
-        return Hit.builder()
+    public HitDto normalize(HitDto dto) {
+        return HitDto.builder()
                 .app(dto.getApp())
                 .uri(dto.getUri())
-                .ip(dto.getIp())
+                .ip(IpMapper.normalize(dto.getIp()))
                 .timestamp(dto.getTimestamp())
                 .build();
     }
+
+    public List<HitDto> normalize(List<HitDto> dtos) {
+        return dtos.stream()
+                .map(StatMapper::normalize)
+                .collect(Collectors.toList());
+    }
+
+    public Hit mapToHit(HitDto dto, Integer appId, Integer uriId) {
+        Route route = Route.match(dto.getUri());
+        return Hit.builder()
+                .appId(appId)
+                .uriId(uriId)
+                .ip(IpMapper.toBytes(dto.getIp()))
+                .routeId(route != null ? route.getId() : null)
+                .entityId(route != null ? route.parseEntityId(dto.getUri()) : null)
+                .timestamp(dto.getTimestamp())
+                .build();
+    }
+
+    public List<ViewStatsDto> mapToViewStatsDto(List<HitCount> counts,
+                                                Map<Integer, String> apps,
+                                                Map<Integer, String> uris) {
+        return counts.stream()
+                .map(count -> new ViewStatsDto(apps.get(count.getAppId()), uris.get(count.getUriId()), count.getHits()))
+                .collect(Collectors.toList());
+    }
+
+    public List<ViewStatsDto> mapToViewStatsDto(Map<StatKey, Long> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> new ViewStatsDto(entry.getKey().getApp(), entry.getKey().getUri(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,13 @@
+package ru.practicum.model;
+
+import lombok.Value;
+import ru.practicum.enums.Granularity;
+
+import java.time.LocalDateTime;
+
+@Value
+public class BucketKey {
+    Granularity granularity;
+    StatKey key;
+    LocalDateTime bucket;
+}
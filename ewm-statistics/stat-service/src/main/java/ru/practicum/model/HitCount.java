@@ -0,0 +1,10 @@
+package ru.practicum.model;
+
+import lombok.Value;
+
+@Value
+public class HitCount {
+    Integer appId;
+    Integer uriId;
+    Long hits;
+}
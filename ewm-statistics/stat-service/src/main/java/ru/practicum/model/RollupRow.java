@@ -0,0 +1,13 @@
+package ru.practicum.model;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class RollupRow {
+    String app;
+    String uri;
+    LocalDateTime bucket;
+    long hits;
+}
@@ -0,0 +1,140 @@
+package ru.practicum.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.enums.PartitionInterval;
+import ru.practicum.enums.RetentionAction;
+import ru.practicum.repository.Databases;
+import ru.practicum.repository.PartitionRepository;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Ведёт секции таблицы hits в PostgreSQL (см. schema-postgresql.sql): заранее создаёт
+ * секции на premake интервалов вперёд и удаляет или отсоединяет секции старше срока хранения.
+ * Запросы фильтруют hits по created, поэтому PostgreSQL отсекает лишние секции сам.
+ * Обращения, для которых секции не нашлось (сервис был остановлен дольше premake, пришли хиты
+ * из будущего или прошлого), попадают в hits_default; при обслуживании они переносятся в свои секции,
+ * иначе PostgreSQL не дал бы создать секцию на их интервал.
+ */
+@Component
+@Slf4j
+public class HitPartitionManager {
+
+    private static final String TABLE = "hits";
+    private static final String PREFIX = TABLE + "_p";
+    private static final String DEFAULT = TABLE + "_default";
+
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final PartitionInterval interval;
+    private final int premake;
+    private final int retentionDays;
+    private final RetentionAction retentionAction;
+
+    public HitPartitionManager(PartitionRepository partitionRepository,
+                               DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${stat.partition.enabled:false}") boolean enabled,
+                               @Value("${stat.partition.interval:DAY}") PartitionInterval interval,
+                               @Value("${stat.partition.premake:7}") int premake,
+                               @Value("${stat.partition.retention-days:0}") int retentionDays,
+                               @Value("${stat.partition.retention-action:DETACH}") RetentionAction retentionAction) {
+        this.partitionRepository = partitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled && Databases.isPostgres(dataSource);
+        this.interval = interval;
+        this.premake = premake;
+        this.retentionDays = retentionDays;
+        this.retentionAction = retentionAction;
+        if (enabled && !this.enabled) {
+            log.warn("Секционирование hits поддерживается только в PostgreSQL и будет отключено");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stat.partition.cron:0 5 0 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        if (!partitionRepository.isPartitioned(TABLE)) {
+            log.warn("Таблица {} не секционирована, запустите сервис с spring.sql.init.platform=postgresql", TABLE);
+            return;
+        }
+        rehomeDefault();
+        createAhead(LocalDate.now());
+        if (retentionDays > 0) {
+            applyRetention(LocalDate.now().minusDays(retentionDays));
+        }
+    }
+
+    private void rehomeDefault() {
+        Set<LocalDate> starts = new LinkedHashSet<>();
+        partitionRepository.findDays(DEFAULT).forEach(day -> starts.add(interval.floor(day)));
+        for (LocalDate from : starts) {
+            LocalDate to = from.plus(1, interval.getUnit());
+            String partition = PREFIX + interval.suffix(from);
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        partitionRepository.movePartition(TABLE, DEFAULT, partition, from, to));
+                log.info("Строки c {} по {} перенесены из {} в секцию {}", from, to, DEFAULT, partition);
+            } catch (DataAccessException e) {
+                log.error("Не удалось перенести строки c {} по {} из {} в секцию {}", from, to, DEFAULT, partition, e);
+            }
+        }
+    }
+
+    private void createAhead(LocalDate today) {
+        LocalDate from = interval.floor(today);
+        for (int i = 0; i <= premake; i++) {
+            LocalDate to = from.plus(1, interval.getUnit());
+            String partition = PREFIX + interval.suffix(from);
+            try {
+                partitionRepository.createPartition(TABLE, partition, from, to);
+            } catch (DataAccessException e) {
+                log.error("Не удалось создать секцию {} c {} по {}", partition, from, to, e);
+            }
+            from = to;
+        }
+    }
+
+    private void applyRetention(LocalDate threshold) {
+        for (String partition : partitionRepository.findPartitions(TABLE)) {
+            if (!partition.startsWith(PREFIX)) {
+                continue;
+            }
+            LocalDate to;
+            try {
+                to = interval.parseSuffix(partition.substring(PREFIX.length())).plus(1, interval.getUnit());
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (to.isAfter(threshold)) {
+                continue;
+            }
+            if (retentionAction == RetentionAction.DROP) {
+                partitionRepository.dropPartition(partition);
+            } else {
+                partitionRepository.detachPartition(TABLE, partition);
+            }
+            log.info("Секция {} старше {} обработана по политике хранения: {}", partition, threshold, retentionAction);
+        }
+    }
+}
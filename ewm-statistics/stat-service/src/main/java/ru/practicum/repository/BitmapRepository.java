@@ -0,0 +1,116 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.mapper.IpMapper;
+import ru.practicum.model.StatKey;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+public class BitmapRepository {
+
+    private static final String PG_CREATE = "insert into hit_bitmaps (app, uri, bucket, bitmap) " +
+            "values (:app, :uri, :day, :bitmap) on conflict do nothing";
+
+    private static final String MERGE_CREATE = "merge into hit_bitmaps t " +
+            "using (select cast(:app as varchar(255)) as app, cast(:uri as varchar(255)) as uri, " +
+            "cast(:day as timestamp) as bucket) s " +
+            "on t.app = s.app and t.uri = s.uri and t.bucket = s.bucket " +
+            "when not matched then insert (app, uri, bucket, bitmap) values (s.app, s.uri, s.bucket, :bitmap)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String create;
+
+    public BitmapRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.create = Databases.isPostgres(dataSource) ? PG_CREATE : MERGE_CREATE;
+    }
+
+    public byte[] lockBitmap(StatKey key, LocalDateTime day, byte[] empty) {
+        MapSqlParameterSource params = keyParams(key, day).addValue("bitmap", empty);
+        jdbcTemplate.update(create, params);
+        return jdbcTemplate.queryForObject("select bitmap from hit_bitmaps " +
+                "where app = :app and uri = :uri and bucket = :day for update", params, byte[].class);
+    }
+
+    public void updateBitmap(StatKey key, LocalDateTime day, byte[] bitmap) {
+        jdbcTemplate.update("update hit_bitmaps set bitmap = :bitmap " +
+                "where app = :app and uri = :uri and bucket = :day", keyParams(key, day).addValue("bitmap", bitmap));
+    }
+
+    public void findBitmaps(LocalDateTime from,
+                            LocalDateTime to,
+                            List<String> uris,
+                            BiConsumer<StatKey, byte[]> consumer) {
+        String sql = "select app, uri, bitmap from hit_bitmaps " +
+                "where bucket >= :from and bucket < :to" +
+                (uris != null ? " and uri in (:uris)" : "");
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")), rs.getBytes("bitmap"));
+        });
+    }
+
+    public void findRawVisitors(LocalDateTime from,
+                                LocalDateTime to,
+                                List<String> uris,
+                                RawVisitorConsumer consumer) {
+        String sql = "select a.name as app, u.name as uri, h.ip, d.id from " +
+                "(select distinct app_id, uri_id, ip from hits" +
+                " where created >= :from and created < :to" +
+                (uris != null ? " and uri_id in (select id from uris where name in (:uris))" : "") +
+                ") h join apps a on a.id = h.app_id join uris u on u.id = h.uri_id " +
+                "left join ip_dictionary d on d.ip = h.ip";
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            int id = rs.getInt("id");
+            consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")),
+                    IpMapper.toString(rs.getBytes("ip")), rs.wasNull() ? null : id);
+        });
+    }
+
+    public void replaceBitmaps(LocalDateTime day, Map<StatKey, byte[]> bitmaps) {
+        MapSqlParameterSource params = new MapSqlParameterSource("day", Timestamp.valueOf(day));
+        jdbcTemplate.update("delete from hit_bitmaps where bucket = :day", params);
+        SqlParameterSource[] rows = bitmaps.entrySet().stream()
+                .map(entry -> keyParams(entry.getKey(), day).addValue("bitmap", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("insert into hit_bitmaps (app, uri, bucket, bitmap) " +
+                "values (:app, :uri, :day, :bitmap)", rows);
+    }
+
+    public void findDistinctVisitors(LocalDateTime from, LocalDateTime to, BiConsumer<StatKey, String> consumer) {
+        jdbcTemplate.query("select a.name as app, u.name as uri, h.ip from " +
+                        "(select distinct app_id, uri_id, ip from hits where created >= :from and created < :to) h " +
+                        "join apps a on a.id = h.app_id join uris u on u.id = h.uri_id",
+                rangeParams(from, to, null), rs -> {
+                    consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")),
+                            IpMapper.toString(rs.getBytes("ip")));
+                });
+    }
+
+    private MapSqlParameterSource keyParams(StatKey key, LocalDateTime day) {
+        return new MapSqlParameterSource()
+                .addValue("app", key.getApp())
+                .addValue("uri", key.getUri())
+                .addValue("day", Timestamp.valueOf(day));
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+    }
+
+    @FunctionalInterface
+    public interface RawVisitorConsumer {
+        void accept(StatKey key, String ip, Integer ipId);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.HitCount;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+public class ChangesRepository {
+
+    private static final String PG_CREATE = "insert into hit_ingest_lock (id) values (1) on conflict do nothing";
+
+    private static final String MERGE_CREATE = "merge into hit_ingest_lock t using (select 1 as id) s on t.id = s.id " +
+            "when not matched then insert (id) values (1)";
+
+    private static final String UPPER_BOUND = "select max(id) from " +
+            "(select id from hits where id > :after order by id limit :limit) t";
+
+    private static final String COUNT_HITS = "select app_id, uri_id, count(*) as hits from hits " +
+            "where id > :after and id <= :upTo group by app_id, uri_id";
+
+    private static final String COUNT_NEW_VISITORS = "select n.app_id, n.uri_id, count(*) as hits from " +
+            "(select distinct app_id, uri_id, ip from hits where id > :after and id <= :upTo) n " +
+            "where not exists (select 1 from hits p where p.uri_id = n.uri_id and p.ip = n.ip " +
+            "and p.app_id = n.app_id and p.id <= :after) " +
+            "group by n.app_id, n.uri_id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String create;
+
+    public ChangesRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.create = Databases.isPostgres(dataSource) ? PG_CREATE : MERGE_CREATE;
+    }
+
+    /**
+     * Блокирует строку hit_ingest_lock до конца транзакции записи. Пока блокировка держится,
+     * никто другой не вставляет в hits, поэтому id обращений становятся видимыми строго по возрастанию.
+     */
+    public void lockIngest() {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        jdbcTemplate.update(create, params);
+        jdbcTemplate.queryForList("select id from hit_ingest_lock where id = 1 for update", params, Integer.class);
+    }
+
+    /**
+     * id, до которого включительно читать очередную порцию: не больше limit обращений после after.
+     */
+    public long findUpperBound(long after, int limit) {
+        Long upTo = jdbcTemplate.queryForObject(UPPER_BOUND,
+                new MapSqlParameterSource("after", after).addValue("limit", limit), Long.class);
+        return upTo != null ? upTo : after;
+    }
+
+    public Map<Long, HitCount> countHits(long after, long upTo) {
+        return count(COUNT_HITS, after, upTo);
+    }
+
+    /**
+     * Число IP в порции, которые раньше к этому (app, uri) не обращались.
+     */
+    public Map<Long, HitCount> countNewVisitors(long after, long upTo) {
+        return count(COUNT_NEW_VISITORS, after, upTo);
+    }
+
+    private Map<Long, HitCount> count(String sql, long after, long upTo) {
+        Map<Long, HitCount> counts = new HashMap<>();
+        jdbcTemplate.query(sql, new MapSqlParameterSource("after", after).addValue("upTo", upTo),
+                (RowCallbackHandler) rs -> {
+                    HitCount count = new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"));
+                    counts.put(((long) count.getAppId() << 32) | count.getUriId(), count);
+                });
+        return counts;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+public class DictionaryRepository {
+
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private static final String PG_INSERT = "insert into %s (name) values (:name) on conflict do nothing";
+
+    private static final String MERGE_INSERT = "merge into %s t " +
+            "using (select cast(:name as varchar(255)) as name) s on t.name = s.name " +
+            "when not matched then insert (name) values (s.name)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String insert;
+
+    public DictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insert = Databases.isPostgres(dataSource) ? PG_INSERT : MERGE_INSERT;
+    }
+
+    public void insertAll(String table, Collection<String> names) {
+        SqlParameterSource[] params = names.stream()
+                .sorted()
+                .map(name -> new MapSqlParameterSource("name", name))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(String.format(insert, table), params);
+    }
+
+    public Map<String, Integer> findIds(String table, Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (List<String> chunk : chunks(names)) {
+            jdbcTemplate.query("select id, name from " + table + " where name in (:names)",
+                    new MapSqlParameterSource("names", chunk),
+                    rs -> {
+                        ids.put(rs.getString("name"), rs.getInt("id"));
+                    });
+        }
+        return ids;
+    }
+
+    public Map<Integer, String> findNames(String table, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        for (List<Integer> chunk : chunks(ids)) {
+            jdbcTemplate.query("select id, name from " + table + " where id in (:ids)",
+                    new MapSqlParameterSource("ids", chunk),
+                    rs -> {
+                        names.put(rs.getInt("id"), rs.getString("name"));
+                    });
+        }
+        return names;
+    }
+
+    public void findAfter(String table, int afterId, BiConsumer<Integer, String> consumer) {
+        jdbcTemplate.query("select id, name from " + table + " where id > :afterId",
+                new MapSqlParameterSource("afterId", afterId),
+                (RowCallbackHandler) rs -> consumer.accept(rs.getInt("id"), rs.getString("name")));
+    }
+
+    private <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> list = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK) {
+            chunks.add(list.subList(from, Math.min(from + LOOKUP_CHUNK, list.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+
+@Repository
+public class HitLogOffsetRepository {
+
+    private static final String PG_CREATE = "insert into hit_log_offset (id, committed) values (1, :committed) " +
+            "on conflict do nothing";
+
+    private static final String MERGE_CREATE = "merge into hit_log_offset t using (select 1 as id) s on t.id = s.id " +
+            "when not matched then insert (id, committed) values (1, :committed)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String create;
+
+    public HitLogOffsetRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.create = Databases.isPostgres(dataSource) ? PG_CREATE : MERGE_CREATE;
+    }
+
+    public long findCommitted(long initial) {
+        MapSqlParameterSource params = new MapSqlParameterSource("committed", initial);
+        jdbcTemplate.update(create, params);
+        Long committed = jdbcTemplate.queryForObject("select committed from hit_log_offset where id = 1",
+                params, Long.class);
+        return committed != null ? committed : initial;
+    }
+
+    public void updateCommitted(long committed) {
+        jdbcTemplate.update("update hit_log_offset set committed = :committed where id = 1",
+                new MapSqlParameterSource("committed", committed));
+    }
+}
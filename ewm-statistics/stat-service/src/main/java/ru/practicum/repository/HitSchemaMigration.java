@@ -0,0 +1,162 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.enums.Route;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.mapper.IpMapper;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Приводит таблицу hits, созданную прежними версиями сервиса, к текущей схеме. Запускается до schema.sql:
+ * CREATE TABLE IF NOT EXISTS старую таблицу не трогает, а индексы и вставки ждут новых колонок.
+ * Строковые app и uri переносятся в словари apps и uris, строковый ip переводится в bytea,
+ * а для уже сохранённых обращений к /events/{id} заполняются route_id и entity_id.
+ * В PostgreSQL миграция идёт одной транзакцией, в H2 DDL фиксируется сразу.
+ */
+@Slf4j
+public class HitSchemaMigration {
+
+    private static final String TABLE = "hits";
+    private static final int BATCH_SIZE = 1000;
+    private static final byte[] UNKNOWN_IP = new byte[4];
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public HitSchemaMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public void migrate() {
+        Map<String, Integer> columns = columns();
+        if (columns.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (columns.containsKey("app")) {
+                moveToDictionary("app", "apps", "app_id");
+            }
+            if (columns.containsKey("uri")) {
+                moveToDictionary("uri", "uris", "uri_id");
+            }
+            Integer ipType = columns.get("ip");
+            if (ipType != null && (ipType == Types.VARCHAR || ipType == Types.CHAR)) {
+                convertIp();
+            }
+            if (!columns.containsKey("route_id")) {
+                addRoutes();
+            }
+        });
+    }
+
+    /**
+     * Колонки hits в нижнем регистре с их java.sql.Types; пусто, если таблицы ещё нет.
+     */
+    private Map<String, Integer> columns() {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, metaData -> {
+                String table = metaData.storesUpperCaseIdentifiers() ? TABLE.toUpperCase() : TABLE;
+                Map<String, Integer> columns = new HashMap<>();
+                try (ResultSet rs = metaData.getColumns(null, metaData.getConnection().getSchema(), table, null)) {
+                    while (rs.next()) {
+                        columns.put(rs.getString("COLUMN_NAME").toLowerCase(), rs.getInt("DATA_TYPE"));
+                    }
+                }
+                return columns;
+            });
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Не удалось прочитать схему таблицы " + TABLE, e);
+        }
+    }
+
+    private void moveToDictionary(String column, String dictionary, String idColumn) {
+        log.info("Перенос hits.{} в словарь {}", column, dictionary);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + dictionary + " (" +
+                "id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY NOT NULL, " +
+                "name varchar(255) NOT NULL UNIQUE)");
+        jdbcTemplate.update("insert into " + dictionary + " (name) select distinct h." + column + " from hits h " +
+                "where not exists (select 1 from " + dictionary + " d where d.name = h." + column + ")");
+        jdbcTemplate.execute("alter table hits add column if not exists " + idColumn + " INT");
+        jdbcTemplate.update("update hits set " + idColumn + " = (select d.id from " + dictionary + " d " +
+                "where d.name = hits." + column + ")");
+        jdbcTemplate.execute("alter table hits alter column " + idColumn + " set not null");
+        jdbcTemplate.execute("alter table hits drop column " + column);
+    }
+
+    /**
+     * Строки, которые не разбираются как IP-литерал, получают адрес 0.0.0.0: раньше сервис их не проверял.
+     */
+    private void convertIp() {
+        log.info("Перевод hits.ip в bytea");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS hit_ip_migration (" +
+                "ip varchar(255) PRIMARY KEY NOT NULL, ip_bytes bytea NOT NULL)");
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int[] invalid = new int[1];
+        jdbcTemplate.query("select distinct ip from hits", rs -> {
+            String ip = rs.getString(1);
+            byte[] bytes;
+            try {
+                bytes = IpMapper.toBytes(ip);
+            } catch (ValidationException e) {
+                bytes = UNKNOWN_IP;
+                invalid[0]++;
+            }
+            batch.add(new Object[]{ip, bytes});
+            if (batch.size() == BATCH_SIZE) {
+                insertIps(batch);
+            }
+        });
+        insertIps(batch);
+        if (invalid[0] > 0) {
+            log.warn("{} значений hits.ip не являются IP-адресами и сохранены как 0.0.0.0", invalid[0]);
+        }
+        jdbcTemplate.execute("alter table hits add column ip_bytes bytea");
+        jdbcTemplate.update("update hits set ip_bytes = (select m.ip_bytes from hit_ip_migration m " +
+                "where m.ip = hits.ip)");
+        jdbcTemplate.execute("alter table hits drop column ip");
+        jdbcTemplate.execute("alter table hits rename column ip_bytes to ip");
+        jdbcTemplate.execute("alter table hits alter column ip set not null");
+        jdbcTemplate.execute("drop table hit_ip_migration");
+    }
+
+    /**
+     * Маршрут определяется по URI из словаря, поэтому обновление идёт по индексу (uri_id, created).
+     */
+    private void addRoutes() {
+        log.info("Заполнение hits.route_id и hits.entity_id");
+        jdbcTemplate.execute("alter table hits add column route_id SMALLINT");
+        jdbcTemplate.execute("alter table hits add column entity_id BIGINT");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS hits_uri_created_idx ON hits (uri_id, created)");
+        List<Object[]> batch = new ArrayList<>();
+        jdbcTemplate.query("select id, name from uris", rs -> {
+            String uri = rs.getString("name");
+            Route route = Route.match(uri);
+            if (route != null) {
+                batch.add(new Object[]{route.getId(), route.parseEntityId(uri), rs.getInt("id")});
+            }
+        });
+        jdbcTemplate.batchUpdate("update hits set route_id = ?, entity_id = ? where uri_id = ?", batch);
+    }
+
+    private void insertIps(List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into hit_ip_migration (ip, ip_bytes) values (?, ?)", batch);
+            batch.clear();
+        }
+    }
+}
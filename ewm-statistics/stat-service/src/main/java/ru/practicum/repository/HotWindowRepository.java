@@ -0,0 +1,32 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.mapper.IpMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class HotWindowRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void findHits(LocalDateTime from, HitRowConsumer consumer) {
+        jdbcTemplate.query("select a.name as app, u.name as uri, h.ip, h.created from hits h " +
+                        "join apps a on a.id = h.app_id join uris u on u.id = h.uri_id " +
+                        "where h.created >= :from order by h.created",
+                new MapSqlParameterSource("from", Timestamp.valueOf(from)), rs -> {
+                    consumer.accept(rs.getString("app"), rs.getString("uri"),
+                            IpMapper.toString(rs.getBytes("ip")), rs.getTimestamp("created").toLocalDateTime());
+                });
+    }
+
+    @FunctionalInterface
+    public interface HitRowConsumer {
+        void accept(String app, String uri, String ip, LocalDateTime created);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.mapper.IpMapper;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Repository
+public class IpDictionaryRepository {
+
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private static final String PG_INSERT = "insert into ip_dictionary (ip) values (:ip) on conflict do nothing";
+
+    private static final String MERGE_INSERT = "merge into ip_dictionary t " +
+            "using (select cast(:ip as varbinary(16)) as ip) s on t.ip = s.ip " +
+            "when not matched then insert (ip) values (s.ip)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String insert;
+
+    public IpDictionaryRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insert = Databases.isPostgres(dataSource) ? PG_INSERT : MERGE_INSERT;
+    }
+
+    public void insertAll(Collection<String> ips) {
+        SqlParameterSource[] params = ips.stream()
+                .sorted()
+                .map(ip -> new MapSqlParameterSource("ip", IpMapper.toBytes(ip)))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(insert, params);
+    }
+
+    public Map<String, Integer> findIds(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> values = new ArrayList<>(ips);
+        for (int from = 0; from < values.size(); from += LOOKUP_CHUNK) {
+            List<String> chunk = values.subList(from, Math.min(from + LOOKUP_CHUNK, values.size()));
+            List<byte[]> encoded = chunk.stream()
+                    .map(IpMapper::toBytes)
+                    .collect(Collectors.toList());
+            jdbcTemplate.query("select id, ip from ip_dictionary where ip in (:ips)",
+                    new MapSqlParameterSource("ips", encoded),
+                    rs -> {
+                        ids.put(IpMapper.toString(rs.getBytes("ip")), rs.getInt("id"));
+                    });
+        }
+        return ids;
+    }
+}
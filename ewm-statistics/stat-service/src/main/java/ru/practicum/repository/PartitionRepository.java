@@ -0,0 +1,63 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned(String table) {
+        Integer count = jdbcTemplate.queryForObject("select count(*) from pg_partitioned_table p " +
+                "join pg_class c on c.oid = p.partrelid where c.relname = ?", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    public List<String> findPartitions(String table) {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i " +
+                "join pg_class c on c.oid = i.inhrelid " +
+                "join pg_class p on p.oid = i.inhparent " +
+                "where p.relname = ?", String.class, table);
+    }
+
+    public void createPartition(String table, String partition, LocalDate from, LocalDate to) {
+        jdbcTemplate.execute("create table if not exists " + partition + " partition of " + table +
+                " for values from ('" + from + "') to ('" + to + "')");
+    }
+
+    /**
+     * Дни, за которые в секции по умолчанию лежат строки, по возрастанию.
+     */
+    public List<LocalDate> findDays(String partition) {
+        return jdbcTemplate.queryForList("select distinct cast(created as date) from " + partition + " order by 1",
+                LocalDate.class);
+    }
+
+    /**
+     * Создаёт секцию для строк, уже попавших в секцию по умолчанию: PostgreSQL не даст создать секцию,
+     * пока в defaultPartition есть строки её диапазона. Строки переносятся в отдельную таблицу,
+     * которая затем присоединяется к table; вызывать в транзакции.
+     */
+    public void movePartition(String table, String defaultPartition, String partition, LocalDate from, LocalDate to) {
+        jdbcTemplate.execute("create table " + partition + " (like " + table + " including defaults)");
+        jdbcTemplate.update("with moved as (delete from " + defaultPartition +
+                " where created >= ? and created < ? returning *) insert into " + partition + " select * from moved",
+                from, to);
+        jdbcTemplate.execute("alter table " + table + " attach partition " + partition +
+                " for values from ('" + from + "') to ('" + to + "')");
+    }
+
+    public void dropPartition(String partition) {
+        jdbcTemplate.execute("drop table if exists " + partition);
+    }
+
+    public void detachPartition(String table, String partition) {
+        jdbcTemplate.execute("alter table " + table + " detach partition " + partition);
+    }
+}
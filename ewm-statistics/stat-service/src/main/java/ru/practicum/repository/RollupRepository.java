@@ -0,0 +1,107 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.RollupRow;
+import ru.practicum.model.StatKey;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class RollupRepository {
+
+    private static final String PG_UPSERT = "insert into %1$s (app, uri, bucket, hits) " +
+            "values (:app, :uri, :bucket, :hits) " +
+            "on conflict (app, uri, bucket) do update set hits = %1$s.hits + excluded.hits";
+
+    private static final String MERGE_UPSERT = "merge into %1$s t " +
+            "using (select cast(:app as varchar(255)) as app, cast(:uri as varchar(255)) as uri, " +
+            "cast(:bucket as timestamp) as bucket, cast(:hits as bigint) as hits) s " +
+            "on t.app = s.app and t.uri = s.uri and t.bucket = s.bucket " +
+            "when matched then update set t.hits = t.hits + s.hits " +
+            "when not matched then insert (app, uri, bucket, hits) values (s.app, s.uri, s.bucket, s.hits)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String upsert;
+
+    public RollupRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsert = Databases.isPostgres(dataSource) ? PG_UPSERT : MERGE_UPSERT;
+    }
+
+    public void increment(Granularity granularity, List<RollupRow> rows) {
+        SqlParameterSource[] params = rows.stream()
+                .map(row -> new MapSqlParameterSource()
+                        .addValue("app", row.getApp())
+                        .addValue("uri", row.getUri())
+                        .addValue("bucket", Timestamp.valueOf(row.getBucket()))
+                        .addValue("hits", row.getHits()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(String.format(upsert, table(granularity)), params);
+    }
+
+    public void sumHits(Granularity granularity,
+                        LocalDateTime from,
+                        LocalDateTime to,
+                        List<String> uris,
+                        Map<StatKey, Long> counts) {
+        String sql = "select app, uri, sum(hits) as hits from " + table(granularity) +
+                " where bucket >= :from and bucket < :to" +
+                (uris != null ? " and uri in (:uris)" : "") +
+                " group by app, uri";
+        accumulate(sql, from, to, uris, counts);
+    }
+
+    public void countRawHits(LocalDateTime from,
+                             LocalDateTime to,
+                             List<String> uris,
+                             Map<StatKey, Long> counts) {
+        String sql = "select a.name as app, u.name as uri, h.hits from " +
+                "(select app_id, uri_id, count(ip) as hits from hits" +
+                " where created >= :from and created < :to" +
+                (uris != null ? " and uri_id in (select id from uris where name in (:uris))" : "") +
+                " group by app_id, uri_id) h " +
+                "join apps a on a.id = h.app_id join uris u on u.id = h.uri_id";
+        accumulate(sql, from, to, uris, counts);
+    }
+
+    public void rebuild(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        jdbcTemplate.update("delete from " + table(granularity) +
+                " where bucket >= :from and bucket < :to", params);
+        String bucket = "date_trunc('" + granularity.getField() + "', created)";
+        jdbcTemplate.update("insert into " + table(granularity) + " (app, uri, bucket, hits) " +
+                "select a.name, u.name, h.bucket, h.hits from " +
+                "(select app_id, uri_id, " + bucket + " as bucket, count(ip) as hits from hits " +
+                "where created >= :from and created < :to " +
+                "group by app_id, uri_id, " + bucket + ") h " +
+                "join apps a on a.id = h.app_id join uris u on u.id = h.uri_id", params);
+    }
+
+    private String table(Granularity granularity) {
+        return "hits_" + granularity.getField();
+    }
+
+    private void accumulate(String sql,
+                            LocalDateTime from,
+                            LocalDateTime to,
+                            List<String> uris,
+                            Map<StatKey, Long> counts) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+        jdbcTemplate.query(sql, params, rs -> {
+            counts.merge(new StatKey(rs.getString("app"), rs.getString("uri")), rs.getLong("hits"), Long::sum);
+        });
+    }
+}
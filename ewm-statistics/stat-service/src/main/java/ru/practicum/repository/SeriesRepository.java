@@ -0,0 +1,77 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.StatKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class SeriesRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void sumRollups(Granularity granularity,
+                           Granularity step,
+                           LocalDateTime from,
+                           LocalDateTime to,
+                           List<String> uris,
+                           BucketConsumer consumer) {
+        String bucket = "date_trunc('" + step.getField() + "', bucket)";
+        String sql = "select app, uri, " + bucket + " as step_bucket, sum(hits) as hits " +
+                "from hits_" + granularity.getField() +
+                " where bucket >= :from and bucket < :to" +
+                (uris != null ? " and uri in (:uris)" : "") +
+                " group by app, uri, " + bucket;
+        query(sql, from, to, uris, consumer);
+    }
+
+    public void countRawHits(Granularity step,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             Collection<Integer> uriIds,
+                             boolean unique,
+                             RawBucketConsumer consumer) {
+        String bucket = "date_trunc('" + step.getField() + "', created)";
+        String sql = "select app_id, uri_id, " + bucket + " as step_bucket, " +
+                (unique ? "count(distinct ip)" : "count(ip)") + " as hits from hits" +
+                " where created >= :from and created < :to" +
+                (uriIds != null ? " and uri_id in (:uris)" : "") +
+                " group by app_id, uri_id, " + bucket;
+        jdbcTemplate.query(sql, params(from, to, uriIds), rs -> {
+            consumer.accept(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("step_bucket").toLocalDateTime(), rs.getLong("hits"));
+        });
+    }
+
+    private void query(String sql, LocalDateTime from, LocalDateTime to, List<String> uris, BucketConsumer consumer) {
+        jdbcTemplate.query(sql, params(from, to, uris), rs -> {
+            consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")),
+                    rs.getTimestamp("step_bucket").toLocalDateTime(), rs.getLong("hits"));
+        });
+    }
+
+    private MapSqlParameterSource params(LocalDateTime from, LocalDateTime to, Collection<?> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+    }
+
+    @FunctionalInterface
+    public interface BucketConsumer {
+        void accept(StatKey key, LocalDateTime bucket, long hits);
+    }
+
+    @FunctionalInterface
+    public interface RawBucketConsumer {
+        void accept(int appId, int uriId, LocalDateTime bucket, long hits);
+    }
+}
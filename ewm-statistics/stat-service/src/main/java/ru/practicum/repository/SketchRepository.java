@@ -0,0 +1,92 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.StatKey;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+@Repository
+public class SketchRepository {
+
+    private static final String PG_CREATE = "insert into hit_sketches (granularity, app, uri, bucket, sketch) " +
+            "values (:granularity, :app, :uri, :bucket, :sketch) on conflict do nothing";
+
+    private static final String MERGE_CREATE = "merge into hit_sketches t " +
+            "using (select cast(:granularity as varchar(16)) as granularity, cast(:app as varchar(255)) as app, " +
+            "cast(:uri as varchar(255)) as uri, cast(:bucket as timestamp) as bucket) s " +
+            "on t.granularity = s.granularity and t.app = s.app and t.uri = s.uri and t.bucket = s.bucket " +
+            "when not matched then insert (granularity, app, uri, bucket, sketch) " +
+            "values (s.granularity, s.app, s.uri, s.bucket, :sketch)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String create;
+
+    public SketchRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.create = Databases.isPostgres(dataSource) ? PG_CREATE : MERGE_CREATE;
+    }
+
+    public byte[] lockSketch(Granularity granularity, StatKey key, LocalDateTime bucket, byte[] empty) {
+        MapSqlParameterSource params = keyParams(granularity, key, bucket).addValue("sketch", empty);
+        jdbcTemplate.update(create, params);
+        return jdbcTemplate.queryForObject("select sketch from hit_sketches " +
+                "where granularity = :granularity and app = :app and uri = :uri and bucket = :bucket " +
+                "for update", params, byte[].class);
+    }
+
+    public void updateSketch(Granularity granularity, StatKey key, LocalDateTime bucket, byte[] sketch) {
+        jdbcTemplate.update("update hit_sketches set sketch = :sketch " +
+                "where granularity = :granularity and app = :app and uri = :uri and bucket = :bucket",
+                keyParams(granularity, key, bucket).addValue("sketch", sketch));
+    }
+
+    public void findSketches(Granularity granularity,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             List<String> uris,
+                             BiConsumer<StatKey, byte[]> consumer) {
+        String sql = "select app, uri, sketch from hit_sketches " +
+                "where granularity = :granularity and bucket >= :from and bucket < :to" +
+                (uris != null ? " and uri in (:uris)" : "");
+        MapSqlParameterSource params = rangeParams(from, to, uris).addValue("granularity", granularity.name());
+        jdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")), rs.getBytes("sketch"));
+        });
+    }
+
+    public void findRawIps(LocalDateTime from,
+                           LocalDateTime to,
+                           List<String> uris,
+                           BiConsumer<StatKey, byte[]> consumer) {
+        String sql = "select a.name as app, u.name as uri, h.ip from " +
+                "(select distinct app_id, uri_id, ip from hits" +
+                " where created >= :from and created < :to" +
+                (uris != null ? " and uri_id in (select id from uris where name in (:uris))" : "") +
+                ") h join apps a on a.id = h.app_id join uris u on u.id = h.uri_id";
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")), rs.getBytes("ip"));
+        });
+    }
+
+    private MapSqlParameterSource keyParams(Granularity granularity, StatKey key, LocalDateTime bucket) {
+        return new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("app", key.getApp())
+                .addValue("uri", key.getUri())
+                .addValue("bucket", Timestamp.valueOf(bucket));
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("uris", uris);
+    }
+}
@@ -3,45 +3,87 @@ package ru.practicum.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import ru.practicum.ViewStatsDto;
+import ru.practicum.EntityStatsDto;
 import ru.practicum.entity.Hit;
+import ru.practicum.model.HitCount;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-public interface StatRepository extends JpaRepository<Hit, Integer> {
+public interface StatRepository extends JpaRepository<Hit, Integer>, StatRepositoryCustom {
 
-    @Query("select new ru.practicum.ViewStatsDto(h.app, h.uri, count(distinct h.ip)) " +
+    @Query("select new ru.practicum.model.HitCount(h.appId, h.uriId, count(distinct h.ip)) " +
             "from Hit h " +
-            "where h.timestamp between :start and :end and h.uri in :uris " +
-            "group by h.app, h.uri " +
+            "where h.timestamp between :start and :end and h.uriId in :uriIds " +
+            "group by h.appId, h.uriId " +
             "order by count(distinct h.ip) desc")
-    List<ViewStatsDto> getDistinctStatisticsOfUris(@Param("start") LocalDateTime start,
-                                                   @Param("end") LocalDateTime end,
-                                                   @Param("uris") List<String> uris);
+    List<HitCount> getDistinctStatisticsOfUris(@Param("start") LocalDateTime start,
+                                               @Param("end") LocalDateTime end,
+                                               @Param("uriIds") Collection<Integer> uriIds);
 
-    @Query("select new ru.practicum.ViewStatsDto(h.app, h.uri, count(h.ip)) " +
+    @Query("select new ru.practicum.model.HitCount(h.appId, h.uriId, count(h.ip)) " +
             "from Hit h " +
-            "where h.timestamp between :start and :end and h.uri in :uris " +
-            "group by h.app, h.uri " +
+            "where h.timestamp between :start and :end and h.uriId in :uriIds " +
+            "group by h.appId, h.uriId " +
             "order by count(h.ip) desc")
-    List<ViewStatsDto> getStatisticsOfUris(@Param("start") LocalDateTime start,
-                                           @Param("end") LocalDateTime end,
-                                           @Param("uris") List<String> uris);
+    List<HitCount> getStatisticsOfUris(@Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end,
+                                       @Param("uriIds") Collection<Integer> uriIds);
 
-    @Query("select new ru.practicum.ViewStatsDto(h.app, h.uri, count(distinct h.ip)) " +
+    @Query("select new ru.practicum.model.HitCount(h.appId, h.uriId, count(distinct h.ip)) " +
             "from Hit h " +
             "where h.timestamp between :start and :end " +
-            "group by h.app, h.uri " +
+            "group by h.appId, h.uriId " +
             "order by count(distinct h.ip) desc")
-    List<ViewStatsDto> getDistinctStatistics(@Param("start") LocalDateTime start,
-                                             @Param("end") LocalDateTime end);
+    List<HitCount> getDistinctStatistics(@Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end);
 
-    @Query("select new ru.practicum.ViewStatsDto(h.app, h.uri, count(h.ip)) " +
+    @Query("select new ru.practicum.model.HitCount(h.appId, h.uriId, count(h.ip)) " +
             "from Hit h " +
             "where h.timestamp between :start and :end " +
-            "group by h.app, h.uri " +
+            "group by h.appId, h.uriId " +
             "order by count(h.ip) desc")
-    List<ViewStatsDto> getStatistics(@Param("start") LocalDateTime start,
-                                     @Param("end") LocalDateTime end);
+    List<HitCount> getStatistics(@Param("start") LocalDateTime start,
+                                 @Param("end") LocalDateTime end);
+
+    @Query("select new ru.practicum.EntityStatsDto(h.entityId, count(distinct h.ip)) " +
+            "from Hit h " +
+            "where h.routeId = :routeId and h.entityId in :ids and h.timestamp between :start and :end " +
+            "group by h.entityId")
+    List<EntityStatsDto> getDistinctEntityStatistics(@Param("routeId") Integer routeId,
+                                                     @Param("ids") Collection<Long> ids,
+                                                     @Param("start") LocalDateTime start,
+                                                     @Param("end") LocalDateTime end);
+
+    @Query("select new ru.practicum.EntityStatsDto(h.entityId, count(h.ip)) " +
+            "from Hit h " +
+            "where h.routeId = :routeId and h.entityId in :ids and h.timestamp between :start and :end " +
+            "group by h.entityId")
+    List<EntityStatsDto> getEntityStatistics(@Param("routeId") Integer routeId,
+                                             @Param("ids") Collection<Long> ids,
+                                             @Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end);
+
+    @Query("select new ru.practicum.EntityStatsDto(h.entityId, count(distinct h.ip)) " +
+            "from Hit h " +
+            "where h.routeId = :routeId and h.entityId between :idFrom and :idTo " +
+            "and h.timestamp between :start and :end " +
+            "group by h.entityId")
+    List<EntityStatsDto> getDistinctEntityRangeStatistics(@Param("routeId") Integer routeId,
+                                                          @Param("idFrom") Long idFrom,
+                                                          @Param("idTo") Long idTo,
+                                                          @Param("start") LocalDateTime start,
+                                                          @Param("end") LocalDateTime end);
+
+    @Query("select new ru.practicum.EntityStatsDto(h.entityId, count(h.ip)) " +
+            "from Hit h " +
+            "where h.routeId = :routeId and h.entityId between :idFrom and :idTo " +
+            "and h.timestamp between :start and :end " +
+            "group by h.entityId")
+    List<EntityStatsDto> getEntityRangeStatistics(@Param("routeId") Integer routeId,
+                                                  @Param("idFrom") Long idFrom,
+                                                  @Param("idTo") Long idTo,
+                                                  @Param("start") LocalDateTime start,
+                                                  @Param("end") LocalDateTime end);
 }
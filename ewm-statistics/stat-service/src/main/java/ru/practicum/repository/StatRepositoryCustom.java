@@ -0,0 +1,28 @@
+package ru.practicum.repository;
+
+import ru.practicum.entity.Hit;
+import ru.practicum.model.HitCount;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface StatRepositoryCustom {
+    void saveAllInBatch(List<Hit> hits);
+
+    void streamStatistics(LocalDateTime start,
+                          LocalDateTime end,
+                          Collection<Integer> uriIds,
+                          boolean unique,
+                          Consumer<HitCount> consumer);
+
+    Map<Long, Long> countHits(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds);
+
+    Map<Long, Set<ByteBuffer>> findVisitors(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds);
+
+    Map<Integer, Long> countByApp(LocalDateTime start, LocalDateTime end, Collection<Integer> uriIds, boolean unique);
+}
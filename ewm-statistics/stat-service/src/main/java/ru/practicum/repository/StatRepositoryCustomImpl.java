@@ -0,0 +1,163 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.practicum.entity.Hit;
+import ru.practicum.model.HitCount;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class StatRepositoryCustomImpl implements StatRepositoryCustom {
+
+    private static final String INSERT_HIT = "insert into hits (app_id, uri_id, ip, route_id, entity_id, created) " +
+            "values (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${stat.hits.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stat.stream.fetch-size:1000}")
+    private int fetchSize;
+
+    @Override
+    public void saveAllInBatch(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, (ps, hit) -> {
+            ps.setInt(1, hit.getAppId());
+            ps.setInt(2, hit.getUriId());
+            ps.setBytes(3, hit.getIp());
+            ps.setObject(4, hit.getRouteId(), Types.SMALLINT);
+            ps.setObject(5, hit.getEntityId(), Types.BIGINT);
+            ps.setTimestamp(6, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+
+    @Override
+    public void streamStatistics(LocalDateTime start,
+                                 LocalDateTime end,
+                                 Collection<Integer> uriIds,
+                                 boolean unique,
+                                 Consumer<HitCount> consumer) {
+        String hits = unique ? "count(distinct ip)" : "count(ip)";
+        String sql = "select app_id, uri_id, " + hits + " as hits from hits" +
+                " where created between ? and ?" +
+                (uriIds != null ? " and uri_id in (" + String.join(", ", Collections.nCopies(uriIds.size(), "?")) + ")"
+                        : "") +
+                " group by app_id, uri_id order by " + hits + " desc";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (uriIds != null) {
+                int index = 3;
+                for (Integer uriId : uriIds) {
+                    ps.setInt(index++, uriId);
+                }
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(
+                new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"))));
+    }
+
+    /**
+     * Число обращений по (app, uri) за полуинтервал [from, to); ключ - app_id в старших 32 битах и uri_id в младших.
+     */
+    @Override
+    public Map<Long, Long> countHits(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        queryRange("select app_id, uri_id, count(ip) as hits from hits", " group by app_id, uri_id",
+                from, to, uriIds,
+                rs -> counts.put(key(rs), rs.getLong("hits")));
+        return counts;
+    }
+
+    /**
+     * Различные IP по (app, uri) за полуинтервал [from, to), чтобы множества частей можно было объединить.
+     */
+    @Override
+    public Map<Long, Set<ByteBuffer>> findVisitors(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        Map<Long, Set<ByteBuffer>> visitors = new HashMap<>();
+        queryRange("select distinct app_id, uri_id, ip from hits", "",
+                from, to, uriIds,
+                rs -> visitors.computeIfAbsent(key(rs), k -> new HashSet<>()).add(ByteBuffer.wrap(rs.getBytes("ip"))));
+        return visitors;
+    }
+
+    /**
+     * Число обращений к набору URI по приложениям; при unique посетитель считается один раз на весь набор.
+     */
+    @Override
+    public Map<Integer, Long> countByApp(LocalDateTime start,
+                                         LocalDateTime end,
+                                         Collection<Integer> uriIds,
+                                         boolean unique) {
+        String sql = "select app_id, " + (unique ? "count(distinct ip)" : "count(ip)") + " as hits from hits" +
+                " where created between ? and ?" +
+                " and uri_id in (" + String.join(", ", Collections.nCopies(uriIds.size(), "?")) + ")" +
+                " group by app_id";
+        Map<Integer, Long> counts = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            int index = 3;
+            for (Integer uriId : uriIds) {
+                ps.setInt(index++, uriId);
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> counts.put(rs.getInt("app_id"), rs.getLong("hits")));
+        return counts;
+    }
+
+    private void queryRange(String select,
+                            String groupBy,
+                            LocalDateTime from,
+                            LocalDateTime to,
+                            Collection<Integer> uriIds,
+                            RowCallbackHandler handler) {
+        String sql = select + " where created >= ? and created < ?" +
+                (uriIds != null ? " and uri_id in (" + String.join(", ", Collections.nCopies(uriIds.size(), "?")) + ")"
+                        : "") +
+                groupBy;
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            if (uriIds != null) {
+                int index = 3;
+                for (Integer uriId : uriIds) {
+                    ps.setInt(index++, uriId);
+                }
+            }
+            return ps;
+        }, handler);
+    }
+
+    private static long key(ResultSet rs) throws SQLException {
+        return ((long) rs.getInt("app_id") << 32) | rs.getInt("uri_id");
+    }
+}
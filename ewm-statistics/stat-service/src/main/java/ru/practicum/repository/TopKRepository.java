@@ -0,0 +1,89 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.StatKey;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+@Repository
+public class TopKRepository {
+
+    private static final String PG_CREATE = "insert into hit_topk (granularity, bucket, sketch) " +
+            "values (:granularity, :bucket, :sketch) on conflict do nothing";
+
+    private static final String MERGE_CREATE = "merge into hit_topk t " +
+            "using (select cast(:granularity as varchar(16)) as granularity, cast(:bucket as timestamp) as bucket) s " +
+            "on t.granularity = s.granularity and t.bucket = s.bucket " +
+            "when not matched then insert (granularity, bucket, sketch) values (s.granularity, s.bucket, :sketch)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String create;
+
+    public TopKRepository(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.create = Databases.isPostgres(dataSource) ? PG_CREATE : MERGE_CREATE;
+    }
+
+    public byte[] lockSketch(Granularity granularity, LocalDateTime bucket, byte[] empty) {
+        MapSqlParameterSource params = keyParams(granularity, bucket).addValue("sketch", empty);
+        jdbcTemplate.update(create, params);
+        return jdbcTemplate.queryForObject("select sketch from hit_topk " +
+                "where granularity = :granularity and bucket = :bucket for update", params, byte[].class);
+    }
+
+    public void updateSketch(Granularity granularity, LocalDateTime bucket, byte[] sketch) {
+        jdbcTemplate.update("update hit_topk set sketch = :sketch " +
+                "where granularity = :granularity and bucket = :bucket",
+                keyParams(granularity, bucket).addValue("sketch", sketch));
+    }
+
+    public void findSketches(Granularity granularity,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             Consumer<byte[]> consumer) {
+        MapSqlParameterSource params = rangeParams(from, to).addValue("granularity", granularity.name());
+        jdbcTemplate.query("select sketch from hit_topk " +
+                "where granularity = :granularity and bucket >= :from and bucket < :to", params, rs -> {
+                    consumer.accept(rs.getBytes("sketch"));
+                });
+    }
+
+    public void countRawHits(LocalDateTime from, LocalDateTime to, ObjLongConsumer<StatKey> consumer) {
+        jdbcTemplate.query("select a.name as app, u.name as uri, h.hits from " +
+                "(select app_id, uri_id, count(ip) as hits from hits " +
+                "where created >= :from and created < :to group by app_id, uri_id) h " +
+                "join apps a on a.id = h.app_id join uris u on u.id = h.uri_id", rangeParams(from, to), rs -> {
+                    consumer.accept(new StatKey(rs.getString("app"), rs.getString("uri")), rs.getLong("hits"));
+                });
+    }
+
+    public List<HitCount> findTop(LocalDateTime from, LocalDateTime to, int limit, boolean unique) {
+        String hits = unique ? "count(distinct ip)" : "count(ip)";
+        return jdbcTemplate.query("select app_id, uri_id, " + hits + " as hits from hits " +
+                        "where created >= :from and created < :to group by app_id, uri_id " +
+                        "order by " + hits + " desc limit :limit",
+                rangeParams(from, to).addValue("limit", limit),
+                (rs, rowNum) -> new HitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+    }
+
+    private MapSqlParameterSource keyParams(Granularity granularity, LocalDateTime bucket) {
+        return new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("bucket", Timestamp.valueOf(bucket));
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to) {
+        return new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+    }
+}
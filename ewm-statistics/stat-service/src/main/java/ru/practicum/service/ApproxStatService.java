@@ -0,0 +1,12 @@
+package ru.practicum.service;
+
+import ru.practicum.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ApproxStatService {
+    boolean isEnabled();
+
+    List<ViewStatsDto> getUniqueStatistics(LocalDateTime start, LocalDateTime end, List<String> uris);
+}
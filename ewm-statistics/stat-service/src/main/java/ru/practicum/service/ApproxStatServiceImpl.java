@@ -0,0 +1,117 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.enums.Granularity;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.mapper.IpMapper;
+import ru.practicum.mapper.StatMapper;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.StatKey;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Приближённый подсчёт уникальных посетителей по HyperLogLog-скетчам за день и за час.
+ * Погрешность оценки описана в {@link HyperLogLog}. Скетчи пополняются только
+ * обращениями, записанными после включения режима.
+ */
+@Service
+@Slf4j
+public class ApproxStatServiceImpl implements ApproxStatService, HitListener {
+
+    private static final Granularity[] LEVELS = {Granularity.DAY, Granularity.HOUR};
+    private static final Comparator<BucketKey> KEY_ORDER = Comparator.comparing(BucketKey::getGranularity)
+            .thenComparing(key -> key.getKey().getApp())
+            .thenComparing(key -> key.getKey().getUri())
+            .thenComparing(BucketKey::getBucket);
+
+    private final SketchRepository sketchRepository;
+    private final boolean enabled;
+
+    public ApproxStatServiceImpl(SketchRepository sketchRepository,
+                                 @Value("${stat.hll.enabled:false}") boolean enabled) {
+        this.sketchRepository = sketchRepository;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<HitDto> hits) {
+        if (!enabled) {
+            return;
+        }
+        Map<BucketKey, Set<String>> ipsByKey = new TreeMap<>(KEY_ORDER);
+        for (HitDto hit : hits) {
+            StatKey key = new StatKey(hit.getApp(), hit.getUri());
+            for (Granularity granularity : LEVELS) {
+                ipsByKey.computeIfAbsent(new BucketKey(granularity, key, granularity.floor(hit.getTimestamp())),
+                        bucketKey -> new HashSet<>()).add(hit.getIp());
+            }
+        }
+        byte[] empty = new HyperLogLog().toBytes();
+        ipsByKey.forEach((bucketKey, ips) -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(sketchRepository.lockSketch(
+                    bucketKey.getGranularity(), bucketKey.getKey(), bucketKey.getBucket(), empty));
+            ips.forEach(ip -> sketch.add(IpMapper.toBytes(ip)));
+            sketchRepository.updateSketch(
+                    bucketKey.getGranularity(), bucketKey.getKey(), bucketKey.getBucket(), sketch.toBytes());
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getUniqueStatistics(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatKey, HyperLogLog> sketches = new HashMap<>();
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        collect(start, end.plus(1, ChronoUnit.MICROS), 0, filter, sketches);
+        Map<StatKey, Long> counts = new HashMap<>();
+        sketches.forEach((key, sketch) -> counts.put(key, sketch.estimate()));
+        return StatMapper.mapToViewStatsDto(counts);
+    }
+
+    private void collect(LocalDateTime from,
+                         LocalDateTime to,
+                         int level,
+                         List<String> uris,
+                         Map<StatKey, HyperLogLog> sketches) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == LEVELS.length) {
+            sketchRepository.findRawIps(from, to, uris,
+                    (key, ip) -> sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(ip));
+            return;
+        }
+        Granularity granularity = LEVELS[level];
+        LocalDateTime bucketFrom = granularity.ceil(from);
+        LocalDateTime bucketTo = granularity.floor(to);
+        if (!bucketFrom.isBefore(bucketTo)) {
+            collect(from, to, level + 1, uris, sketches);
+            return;
+        }
+        collect(from, bucketFrom, level + 1, uris, sketches);
+        sketchRepository.findSketches(granularity, bucketFrom, bucketTo, uris,
+                (key, bytes) -> sketches.computeIfAbsent(key, k -> new HyperLogLog())
+                        .merge(HyperLogLog.fromBytes(bytes)));
+        collect(bucketTo, to, level + 1, uris, sketches);
+    }
+}
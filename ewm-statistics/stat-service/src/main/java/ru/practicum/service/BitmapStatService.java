@@ -0,0 +1,14 @@
+package ru.practicum.service;
+
+import ru.practicum.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface BitmapStatService {
+    boolean isEnabled();
+
+    List<ViewStatsDto> getUniqueStatistics(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    void rebuild(LocalDateTime start, LocalDateTime end);
+}
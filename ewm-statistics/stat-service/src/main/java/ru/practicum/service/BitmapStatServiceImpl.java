@@ -0,0 +1,154 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.bitmap.RoaringBitmap;
+import ru.practicum.dictionary.IpDictionary;
+import ru.practicum.enums.Granularity;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.mapper.StatMapper;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.StatKey;
+import ru.practicum.repository.BitmapRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Точный подсчёт уникальных посетителей: IP-адреса переводятся в плотные id,
+ * для каждого (app, uri, день) хранится сжатая битовая карта посетителей.
+ * Целые дни диапазона объединяются через OR, неполные дни дочитываются из hits.
+ */
+@Service
+@Slf4j
+public class BitmapStatServiceImpl implements BitmapStatService, HitListener {
+
+    private static final Comparator<BucketKey> KEY_ORDER = Comparator
+            .comparing((BucketKey key) -> key.getKey().getApp())
+            .thenComparing(key -> key.getKey().getUri())
+            .thenComparing(BucketKey::getBucket);
+
+    private final BitmapRepository bitmapRepository;
+    private final IpDictionary ipDictionary;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public BitmapStatServiceImpl(BitmapRepository bitmapRepository,
+                                 IpDictionary ipDictionary,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${stat.bitmap.enabled:false}") boolean enabled) {
+        this.bitmapRepository = bitmapRepository;
+        this.ipDictionary = ipDictionary;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<HitDto> hits) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Integer> ids = ipDictionary.intern(hits.stream()
+                .map(HitDto::getIp)
+                .collect(Collectors.toSet()));
+        Map<BucketKey, Set<Integer>> visitorsByDay = new TreeMap<>(KEY_ORDER);
+        for (HitDto hit : hits) {
+            BucketKey key = new BucketKey(Granularity.DAY, new StatKey(hit.getApp(), hit.getUri()),
+                    Granularity.DAY.floor(hit.getTimestamp()));
+            visitorsByDay.computeIfAbsent(key, k -> new HashSet<>()).add(ids.get(hit.getIp()));
+        }
+        byte[] empty = new RoaringBitmap().toBytes();
+        visitorsByDay.forEach((key, visitors) -> {
+            RoaringBitmap bitmap = RoaringBitmap.fromBytes(
+                    bitmapRepository.lockBitmap(key.getKey(), key.getBucket(), empty));
+            visitors.forEach(bitmap::add);
+            bitmapRepository.updateBitmap(key.getKey(), key.getBucket(), bitmap.toBytes());
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getUniqueStatistics(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        LocalDateTime to = end.plus(1, ChronoUnit.MICROS);
+        LocalDateTime dayFrom = Granularity.DAY.ceil(start);
+        LocalDateTime dayTo = Granularity.DAY.floor(to);
+        Map<StatKey, Visitors> visitors = new HashMap<>();
+        if (dayFrom.isBefore(dayTo)) {
+            bitmapRepository.findBitmaps(dayFrom, dayTo, filter,
+                    (key, bytes) -> visitors.computeIfAbsent(key, k -> new Visitors())
+                            .ids.or(RoaringBitmap.fromBytes(bytes)));
+            readRaw(start, dayFrom, filter, visitors);
+            readRaw(dayTo, to, filter, visitors);
+        } else {
+            readRaw(start, to, filter, visitors);
+        }
+        Map<StatKey, Long> counts = new HashMap<>();
+        visitors.forEach((key, value) -> counts.put(key, value.ids.cardinality() + value.unknownIps.size()));
+        return StatMapper.mapToViewStatsDto(counts);
+    }
+
+    @Override
+    public void rebuild(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime day = Granularity.DAY.floor(start);
+        while (day.isBefore(end)) {
+            LocalDateTime from = day;
+            transactionTemplate.executeWithoutResult(status -> rebuildDay(from));
+            day = day.plusDays(1);
+        }
+        log.info("Битовые карты посетителей пересчитаны c {} по {}", Granularity.DAY.floor(start), day);
+    }
+
+    private void rebuildDay(LocalDateTime day) {
+        Map<StatKey, Set<String>> ipsByKey = new HashMap<>();
+        bitmapRepository.findDistinctVisitors(day, day.plusDays(1),
+                (key, ip) -> ipsByKey.computeIfAbsent(key, k -> new HashSet<>()).add(ip));
+        Map<String, Integer> ids = ipDictionary.intern(ipsByKey.values().stream()
+                .flatMap(Set::stream)
+                .collect(Collectors.toSet()));
+        Map<StatKey, byte[]> bitmaps = new HashMap<>();
+        ipsByKey.forEach((key, ips) -> {
+            RoaringBitmap bitmap = new RoaringBitmap();
+            ips.forEach(ip -> bitmap.add(ids.get(ip)));
+            bitmaps.put(key, bitmap.toBytes());
+        });
+        bitmapRepository.replaceBitmaps(day, bitmaps);
+    }
+
+    private void readRaw(LocalDateTime from, LocalDateTime to, List<String> uris, Map<StatKey, Visitors> visitors) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        bitmapRepository.findRawVisitors(from, to, uris, (key, ip, ipId) -> {
+            Visitors value = visitors.computeIfAbsent(key, k -> new Visitors());
+            if (ipId != null) {
+                value.ids.add(ipId);
+            } else {
+                value.unknownIps.add(ip);
+            }
+        });
+    }
+
+    private static class Visitors {
+        private final RoaringBitmap ids = new RoaringBitmap();
+        private final Set<String> unknownIps = new HashSet<>();
+    }
+}
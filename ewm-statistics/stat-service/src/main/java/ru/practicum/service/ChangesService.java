@@ -0,0 +1,7 @@
+package ru.practicum.service;
+
+import ru.practicum.ChangesDto;
+
+public interface ChangesService {
+    ChangesDto getChanges(String cursor);
+}
@@ -0,0 +1,102 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ChangeDto;
+import ru.practicum.ChangesDto;
+import ru.practicum.dictionary.StatDictionary;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.HitCount;
+import ru.practicum.repository.ChangesRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Лента приращений по последовательности записи: курсор - закодированный id последнего учтённого обращения.
+ * Порядок id совпадает с порядком коммитов, потому что {@link ru.practicum.ingest.HitWriter}
+ * при включённой ленте пишет под блокировкой hit_ingest_lock.
+ * Уникальные приращения считаются по сохранённой истории: после удаления старых партиций
+ * вернувшийся посетитель снова будет учтён как новый.
+ */
+@Service
+@Slf4j
+public class ChangesServiceImpl implements ChangesService {
+
+    private static final String CURSOR_PREFIX = "h1:";
+
+    private final ChangesRepository changesRepository;
+    private final StatDictionary statDictionary;
+    private final boolean enabled;
+    private final int maxRows;
+
+    public ChangesServiceImpl(ChangesRepository changesRepository,
+                              StatDictionary statDictionary,
+                              @Value("${stat.changes.enabled:false}") boolean enabled,
+                              @Value("${stat.changes.max-rows:10000}") int maxRows) {
+        this.changesRepository = changesRepository;
+        this.statDictionary = statDictionary;
+        this.enabled = enabled;
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ChangesDto getChanges(String cursor) {
+        if (!enabled) {
+            throw new ValidationException("Лента изменений выключена, включите stat.changes.enabled");
+        }
+        long after = cursor == null || cursor.isBlank() ? 0 : decode(cursor);
+        long upTo = changesRepository.findUpperBound(after, maxRows);
+        if (upTo == after) {
+            return new ChangesDto(encode(after), false, Collections.emptyList());
+        }
+        Map<Long, HitCount> hits = changesRepository.countHits(after, upTo);
+        Map<Long, HitCount> visitors = changesRepository.countNewVisitors(after, upTo);
+        Map<Integer, String> apps = statDictionary.findAppNames(hits.values().stream()
+                .map(HitCount::getAppId)
+                .collect(Collectors.toSet()));
+        Map<Integer, String> uris = statDictionary.findUris(hits.values().stream()
+                .map(HitCount::getUriId)
+                .collect(Collectors.toSet()));
+        List<ChangeDto> changes = new ArrayList<>(hits.size());
+        hits.forEach((key, count) -> {
+            HitCount unique = visitors.get(key);
+            changes.add(new ChangeDto(apps.get(count.getAppId()), uris.get(count.getUriId()), count.getHits(),
+                    unique != null ? unique.getHits() : 0L));
+        });
+        changes.sort(Comparator.comparingLong(ChangeDto::getHits).reversed());
+        boolean hasMore = changesRepository.findUpperBound(upTo, 1) > upTo;
+        log.info("Лента изменений: обращения {} - {}, изменено пар (app, uri): {}", after + 1, upTo, changes.size());
+        return new ChangesDto(encode(upTo), hasMore, changes);
+    }
+
+    private static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException(value);
+            }
+            long id = Long.parseLong(value.substring(CURSOR_PREFIX.length()));
+            if (id < 0) {
+                throw new IllegalArgumentException(value);
+            }
+            return id;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор: " + cursor);
+        }
+    }
+}
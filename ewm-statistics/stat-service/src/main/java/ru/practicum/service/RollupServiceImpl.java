@@ -0,0 +1,159 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.enums.Granularity;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.mapper.StatMapper;
+import ru.practicum.model.RollupRow;
+import ru.practicum.model.StatKey;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Поминутные и почасовые агрегаты обращений по (app, uri).
+ * Диапазон запроса покрывается самыми крупными целыми бакетами,
+ * а неполные края дочитываются из бакетов помельче и из сырых hits.
+ */
+@Service
+@Slf4j
+public class RollupServiceImpl implements RollupService, HitListener {
+
+    private static final Granularity[] LEVELS = {Granularity.HOUR, Granularity.MINUTE};
+    private static final Comparator<RollupRow> ROW_ORDER = Comparator.comparing(RollupRow::getApp)
+            .thenComparing(RollupRow::getUri)
+            .thenComparing(RollupRow::getBucket);
+
+    private final RollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int rebuildParallelism;
+    private final long rebuildChunkHours;
+
+    public RollupServiceImpl(RollupRepository rollupRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${stat.rollup.enabled:false}") boolean enabled,
+                             @Value("${stat.rollup.rebuild-parallelism:4}") int rebuildParallelism,
+                             @Value("${stat.rollup.rebuild-chunk-hours:24}") long rebuildChunkHours) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.rebuildParallelism = rebuildParallelism;
+        this.rebuildChunkHours = rebuildChunkHours;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onHits(List<HitDto> hits) {
+        if (!enabled) {
+            return;
+        }
+        for (Granularity granularity : LEVELS) {
+            rollupRepository.increment(granularity, aggregate(hits, granularity));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getStatistics(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatKey, Long> counts = new HashMap<>();
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        collect(start, end.plus(1, ChronoUnit.MICROS), 0, filter, counts);
+        return StatMapper.mapToViewStatsDto(counts);
+    }
+
+    @Override
+    public void rebuild(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime from = Granularity.HOUR.floor(start);
+        LocalDateTime to = Granularity.HOUR.ceil(end);
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildParallelism);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            LocalDateTime chunkStart = from;
+            while (chunkStart.isBefore(to)) {
+                LocalDateTime chunkFrom = chunkStart;
+                LocalDateTime chunkTo = chunkStart.plusHours(rebuildChunkHours).isBefore(to)
+                        ? chunkStart.plusHours(rebuildChunkHours) : to;
+                chunks.add(executor.submit(() -> rebuildChunk(chunkFrom, chunkTo)));
+                chunkStart = chunkTo;
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+            log.info("Агрегаты пересчитаны c {} по {}, частей: {}", from, to, chunks.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Пересчёт агрегатов прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось пересчитать агрегаты", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void rebuildChunk(LocalDateTime from, LocalDateTime to) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Granularity granularity : LEVELS) {
+                rollupRepository.rebuild(granularity, from, to);
+            }
+        });
+        log.debug("Пересчитаны агрегаты c {} по {}", from, to);
+    }
+
+    private void collect(LocalDateTime from,
+                         LocalDateTime to,
+                         int level,
+                         List<String> uris,
+                         Map<StatKey, Long> counts) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == LEVELS.length) {
+            rollupRepository.countRawHits(from, to, uris, counts);
+            return;
+        }
+        Granularity granularity = LEVELS[level];
+        LocalDateTime bucketFrom = granularity.ceil(from);
+        LocalDateTime bucketTo = granularity.floor(to);
+        if (!bucketFrom.isBefore(bucketTo)) {
+            collect(from, to, level + 1, uris, counts);
+            return;
+        }
+        collect(from, bucketFrom, level + 1, uris, counts);
+        rollupRepository.sumHits(granularity, bucketFrom, bucketTo, uris, counts);
+        collect(bucketTo, to, level + 1, uris, counts);
+    }
+
+    private List<RollupRow> aggregate(List<HitDto> hits, Granularity granularity) {
+        Map<StatKey, Map<LocalDateTime, Long>> buckets = new HashMap<>();
+        for (HitDto hit : hits) {
+            buckets.computeIfAbsent(new StatKey(hit.getApp(), hit.getUri()), key -> new HashMap<>())
+                    .merge(granularity.floor(hit.getTimestamp()), 1L, Long::sum);
+        }
+        List<RollupRow> rows = new ArrayList<>();
+        buckets.forEach((key, counts) -> counts.forEach((bucket, count) ->
+                rows.add(new RollupRow(key.getApp(), key.getUri(), bucket, count))));
+        rows.sort(ROW_ORDER);
+        return rows;
+    }
+}
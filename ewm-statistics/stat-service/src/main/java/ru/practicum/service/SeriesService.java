@@ -0,0 +1,11 @@
+package ru.practicum.service;
+
+import ru.practicum.SeriesDto;
+import ru.practicum.enums.Granularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SeriesService {
+    SeriesDto getSeries(LocalDateTime start, LocalDateTime end, Granularity step, List<String> uris, boolean unique);
+}
@@ -0,0 +1,168 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.SeriesDto;
+import ru.practicum.UriSeriesDto;
+import ru.practicum.dictionary.StatDictionary;
+import ru.practicum.enums.Granularity;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.StatKey;
+import ru.practicum.repository.SeriesRepository;
+import ru.practicum.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Ряды обращений по часам или дням за один проход: при включённых агрегатах неуникальные
+ * обращения берутся из hits_hour и hits_minute, края и уникальные обращения - из хранилища обращений.
+ */
+@Service
+@Slf4j
+public class SeriesServiceImpl implements SeriesService {
+
+    private static final Granularity[] LEVELS = {Granularity.HOUR, Granularity.MINUTE};
+
+    private final SeriesRepository seriesRepository;
+    private final RollupService rollupService;
+    private final HitStorage hitStorage;
+    private final StatDictionary statDictionary;
+    private final int maxBuckets;
+
+    public SeriesServiceImpl(SeriesRepository seriesRepository,
+                             RollupService rollupService,
+                             HitStorage hitStorage,
+                             StatDictionary statDictionary,
+                             @Value("${stat.series.max-buckets:10000}") int maxBuckets) {
+        this.seriesRepository = seriesRepository;
+        this.rollupService = rollupService;
+        this.hitStorage = hitStorage;
+        this.statDictionary = statDictionary;
+        this.maxBuckets = maxBuckets;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SeriesDto getSeries(LocalDateTime start,
+                               LocalDateTime end,
+                               Granularity step,
+                               List<String> uris,
+                               boolean unique) {
+        LocalDateTime first = step.floor(start);
+        long size = step.getUnit().between(first, step.floor(end)) + 1;
+        if (size > maxBuckets) {
+            throw new ValidationException("Слишком много бакетов в ряду: " + size +
+                    ", допустимо не более " + maxBuckets);
+        }
+        List<String> filter = uris == null || uris.isEmpty() ? null : uris;
+        Map<StatKey, long[]> series = new HashMap<>();
+        SeriesRepository.BucketConsumer consumer = (key, bucket, hits) -> {
+            long[] line = series.computeIfAbsent(key, k -> new long[(int) size]);
+            line[(int) step.getUnit().between(first, bucket)] += hits;
+        };
+        Map<Long, long[]> raw = new HashMap<>();
+        HitStorage.BucketCountConsumer rawConsumer = (appId, uriId, bucket, hits) -> {
+            long[] line = raw.computeIfAbsent(((long) appId << 32) | uriId, k -> new long[(int) size]);
+            line[(int) step.getUnit().between(first, bucket)] += hits;
+        };
+        Collection<Integer> uriIds = filter == null ? null : statDictionary.findUriIds(filter).values();
+        RawCounter counter = new RawCounter(uriIds, unique, rawConsumer);
+        LocalDateTime to = end.plus(1, ChronoUnit.MICROS);
+        if (!unique && rollupService.isEnabled()) {
+            collect(start, to, 0, step, filter, counter, consumer);
+        } else {
+            counter.count(step, start, to);
+        }
+        mergeRaw(raw, series);
+        List<LocalDateTime> timestamps = new ArrayList<>((int) size);
+        for (int i = 0; i < size; i++) {
+            timestamps.add(first.plus(i, step.getUnit()));
+        }
+        List<UriSeriesDto> lines = series.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<StatKey, long[]> entry) ->
+                        Arrays.stream(entry.getValue()).sum()).reversed())
+                .map(entry -> new UriSeriesDto(entry.getKey().getApp(), entry.getKey().getUri(), entry.getValue()))
+                .collect(Collectors.toList());
+        log.info("Построен ряд c {} по {} с шагом {}: бакетов {}, URI {}", start, end, step, size, lines.size());
+        return new SeriesDto(timestamps, lines);
+    }
+
+    private void collect(LocalDateTime from,
+                         LocalDateTime to,
+                         int level,
+                         Granularity step,
+                         List<String> uris,
+                         RawCounter counter,
+                         SeriesRepository.BucketConsumer consumer) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == LEVELS.length) {
+            counter.count(step, from, to);
+            return;
+        }
+        Granularity granularity = LEVELS[level];
+        LocalDateTime bucketFrom = granularity.ceil(from);
+        LocalDateTime bucketTo = granularity.floor(to);
+        if (!bucketFrom.isBefore(bucketTo)) {
+            collect(from, to, level + 1, step, uris, counter, consumer);
+            return;
+        }
+        collect(from, bucketFrom, level + 1, step, uris, counter, consumer);
+        seriesRepository.sumRollups(granularity, step, bucketFrom, bucketTo, uris, consumer);
+        collect(bucketTo, to, level + 1, step, uris, counter, consumer);
+    }
+
+    private void mergeRaw(Map<Long, long[]> raw, Map<StatKey, long[]> series) {
+        if (raw.isEmpty()) {
+            return;
+        }
+        Map<Integer, String> apps = statDictionary.findAppNames(raw.keySet().stream()
+                .map(key -> (int) (key >>> 32))
+                .collect(Collectors.toSet()));
+        Map<Integer, String> uris = statDictionary.findUris(raw.keySet().stream()
+                .map(key -> (int) (long) key)
+                .collect(Collectors.toSet()));
+        raw.forEach((key, line) -> {
+            StatKey statKey = new StatKey(apps.get((int) (key >>> 32)), uris.get((int) (long) key));
+            long[] merged = series.putIfAbsent(statKey, line);
+            if (merged != null) {
+                for (int i = 0; i < line.length; i++) {
+                    merged[i] += line[i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Подсчёт краёв диапазона по сырым обращениям; пустой фильтр URI означает, что таких URI ещё не было.
+     */
+    private class RawCounter {
+        private final Collection<Integer> uriIds;
+        private final boolean unique;
+        private final HitStorage.BucketCountConsumer consumer;
+
+        RawCounter(Collection<Integer> uriIds, boolean unique, HitStorage.BucketCountConsumer consumer) {
+            this.uriIds = uriIds;
+            this.unique = unique;
+            this.consumer = consumer;
+        }
+
+        void count(Granularity step, LocalDateTime from, LocalDateTime to) {
+            if (uriIds == null || !uriIds.isEmpty()) {
+                hitStorage.countBuckets(step, from, to, uriIds, unique, consumer);
+            }
+        }
+    }
+}
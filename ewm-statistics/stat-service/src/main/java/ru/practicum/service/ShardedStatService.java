@@ -0,0 +1,13 @@
+package ru.practicum.service;
+
+import ru.practicum.model.HitCount;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ShardedStatService {
+    boolean isApplicable(LocalDateTime start, LocalDateTime end);
+
+    List<HitCount> getStatistics(LocalDateTime start, LocalDateTime end, Collection<Integer> uriIds, boolean unique);
+}
@@ -0,0 +1,138 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.bulkhead.Workload;
+import ru.practicum.model.HitCount;
+import ru.practicum.repository.StatRepository;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Подсчёт обращений по сырым hits, разбитый на части по времени, которые считаются параллельно.
+ * Частичные результаты сливаются в памяти: обычные счётчики складываются, а для уникальных
+ * обращений каждая часть возвращает множество IP по (app, uri), и множества объединяются.
+ * Части читаются в отдельных соединениях, поэтому видят каждая свой снимок БД.
+ */
+@Service
+@Slf4j
+public class ShardedStatServiceImpl implements ShardedStatService {
+
+    private final StatRepository statRepository;
+    private final boolean enabled;
+    private final Duration shardSize;
+    private final int minShards;
+    private final ExecutorService executor;
+
+    public ShardedStatServiceImpl(StatRepository statRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${stat.parallel.enabled:false}") boolean enabled,
+                                  @Value("${stat.parallel.threads:4}") int threads,
+                                  @Value("${stat.parallel.shard-hours:24}") long shardHours,
+                                  @Value("${stat.parallel.min-shards:2}") int minShards) {
+        this.statRepository = statRepository;
+        this.enabled = enabled;
+        this.shardSize = Duration.ofHours(shardHours);
+        this.minShards = minShards;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(threads, task -> {
+                    Thread thread = new Thread(Workload.QUERY.bind(task), "stat-shard-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }), "stat.parallel");
+    }
+
+    /**
+     * Разбивать ли запрос: только если диапазон даёт не меньше min-shards частей.
+     */
+    @Override
+    public boolean isApplicable(LocalDateTime start, LocalDateTime end) {
+        return enabled && Duration.between(start, end).compareTo(shardSize.multipliedBy(minShards)) >= 0;
+    }
+
+    @Override
+    public List<HitCount> getStatistics(LocalDateTime start,
+                                        LocalDateTime end,
+                                        Collection<Integer> uriIds,
+                                        boolean unique) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (unique) {
+            List<Map<Long, Set<ByteBuffer>>> parts = runShards(start, end,
+                    (from, to) -> statRepository.findVisitors(from, to, uriIds));
+            Map<Long, Set<ByteBuffer>> visitors = new HashMap<>();
+            for (Map<Long, Set<ByteBuffer>> part : parts) {
+                part.forEach((key, ips) -> visitors.merge(key, ips, (all, more) -> {
+                    all.addAll(more);
+                    return all;
+                }));
+            }
+            visitors.forEach((key, ips) -> counts.put(key, (long) ips.size()));
+        } else {
+            List<Map<Long, Long>> parts = runShards(start, end,
+                    (from, to) -> statRepository.countHits(from, to, uriIds));
+            parts.forEach(part -> part.forEach((key, hits) -> counts.merge(key, hits, Long::sum)));
+        }
+        List<HitCount> result = new ArrayList<>(counts.size());
+        counts.forEach((key, hits) -> result.add(new HitCount((int) (key >>> 32), (int) (long) key, hits)));
+        result.sort(Comparator.comparingLong(HitCount::getHits).reversed());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Запускает query на частях [from, to) диапазона и ждёт все результаты; при ошибке остальные части отменяются.
+     */
+    private <T> List<T> runShards(LocalDateTime start,
+                                  LocalDateTime end,
+                                  BiFunction<LocalDateTime, LocalDateTime, T> query) {
+        LocalDateTime to = end.plus(1, ChronoUnit.MICROS);
+        List<Future<T>> shards = new ArrayList<>();
+        LocalDateTime shardStart = start;
+        while (shardStart.isBefore(to)) {
+            LocalDateTime shardFrom = shardStart;
+            LocalDateTime shardTo = shardStart.plus(shardSize).isBefore(to) ? shardStart.plus(shardSize) : to;
+            shards.add(executor.submit(() -> query.apply(shardFrom, shardTo)));
+            shardStart = shardTo;
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> shard : shards) {
+                results.add(shard.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Параллельный подсчёт статистики прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось посчитать часть статистики", e.getCause());
+        } finally {
+            shards.forEach(shard -> shard.cancel(true));
+        }
+        log.info("Статистика c {} по {} посчитана параллельно, частей: {}", start, end, results.size());
+        return results;
+    }
+}
@@ -1,13 +1,40 @@
 package ru.practicum.service;
 
+import ru.practicum.EntityStatsDto;
 import ru.practicum.HitDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.enums.Route;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatService {
     void saveHit(HitDto hitDto);
 
+    void saveHits(List<HitDto> hitDtos);
+
     List<ViewStatsDto> getStatistics(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    List<ViewStatsDto> getPatternStatistics(LocalDateTime start,
+                                            LocalDateTime end,
+                                            List<String> patterns,
+                                            boolean unique,
+                                            boolean grouped);
+
+    List<ViewStatsDto> getApproxUniqueStatistics(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    void streamStatistics(LocalDateTime start,
+                          LocalDateTime end,
+                          List<String> uris,
+                          boolean unique,
+                          Consumer<ViewStatsDto> consumer);
+
+    List<EntityStatsDto> getEntityStatistics(LocalDateTime start,
+                                             LocalDateTime end,
+                                             Route route,
+                                             List<Long> ids,
+                                             Long idFrom,
+                                             Long idTo,
+                                             boolean unique);
 }
@@ -3,16 +3,37 @@ package ru.practicum.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.EntityStatsDto;
 import ru.practicum.HitDto;
 import ru.practicum.ViewStatsDto;
-import ru.practicum.entity.Hit;
+import ru.practicum.dictionary.StatDictionary;
+import ru.practicum.dictionary.UriIndex;
+import ru.practicum.enums.Route;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.hot.HotWindowStore;
+import ru.practicum.ingest.HitBuffer;
+import ru.practicum.ingest.HitWriter;
 import ru.practicum.mapper.StatMapper;
-import ru.practicum.repository.StatRepository;
+import ru.practicum.model.HitCount;
+import ru.practicum.storage.HitStorage;
+import ru.practicum.wal.HitLog;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Transactional
 @Service
@@ -20,13 +41,46 @@ import java.util.List;
 @Slf4j
 public class StatServiceImpl implements StatService {
 
-    private final StatRepository statRepository;
+    private final StatDictionary statDictionary;
+    private final UriIndex uriIndex;
+    private final HitLog hitLog;
+    private final HitBuffer hitBuffer;
+    private final HitWriter hitWriter;
+    private final RollupService rollupService;
+    private final HotWindowStore hotWindowStore;
+    private final ApproxStatService approxStatService;
+    private final BitmapStatService bitmapStatService;
+    private final HitStorage hitStorage;
 
+    /**
+     * Своей транзакции не открывает: журнал и буфер принимают обращения и без доступа к БД,
+     * а прямая запись идёт в транзакции {@link HitWriter}.
+     */
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void saveHit(HitDto hitDto) {
-        Hit hit = StatMapper.mapToHit(hitDto);
-        statRepository.save(hit);
+        HitDto hit = StatMapper.normalize(hitDto);
+        if (hitLog.isEnabled()) {
+            hitLog.append(hit);
+            return;
+        }
+        if (hitBuffer.add(hit)) {
+            return;
+        }
+        hitWriter.write(List.of(hit));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void saveHits(List<HitDto> hitDtos) {
+        List<HitDto> hits = StatMapper.normalize(hitDtos);
+        if (hitLog.isEnabled()) {
+            hitLog.append(hits);
+            log.info("Записано в журнал обращений одним пакетом: {}", hits.size());
+            return;
+        }
+        hitWriter.write(hits);
+        log.info("Сохранено обращений одним пакетом: {}", hits.size());
     }
 
     @Override
@@ -36,19 +90,149 @@ public class StatServiceImpl implements StatService {
                                             List<String> uris,
                                             boolean unique) {
         checkTime(start, end);
-        if (uris != null && !uris.isEmpty() && unique) {
-            log.info("Получить статистику уникальных обращений, согласно списку URI: {}", uris);
-            return statRepository.getDistinctStatisticsOfUris(start, end, uris);
-        } else if (uris != null && !uris.isEmpty()) {
-            log.info("Получить статистику всех обращений, согласно списку URI: {}", uris);
-            return statRepository.getStatisticsOfUris(start, end, uris);
-        } else if (unique) {
-            log.info("Получить статистику всех уникальных обращений");
-            return statRepository.getDistinctStatistics(start, end);
-        } else {
-            log.info("Получить статистику всех обращений");
-            return statRepository.getStatistics(start, end);
+        if (hotWindowStore.covers(start, end)) {
+            log.info("Получить статистику из горячего окна в памяти, согласно списку URI: {}", uris);
+            return hotWindowStore.getStatistics(start, end, uris, unique);
+        }
+        if (!unique && rollupService.isEnabled()) {
+            log.info("Получить статистику всех обращений из агрегатов, согласно списку URI: {}", uris);
+            return rollupService.getStatistics(start, end, uris);
+        }
+        if (unique && bitmapStatService.isEnabled()) {
+            log.info("Получить статистику уникальных обращений по битовым картам, согласно списку URI: {}", uris);
+            return bitmapStatService.getUniqueStatistics(start, end, uris);
+        }
+        Collection<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = statDictionary.findUriIds(uris).values();
+            if (uriIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        log.info("Получить статистику по сырым обращениям, unique = {}, согласно списку URI: {}", unique, uris);
+        List<HitCount> counts = hitStorage.aggregate(start, end, uriIds, unique);
+        return mapToViewStatsDto(counts);
+    }
+
+    /**
+     * Статистика по шаблонам URI со звёздочкой. Без группировки шаблоны раскрываются в конкретные URI
+     * и считаются как обычный запрос; с группировкой каждый шаблон даёт по строке на приложение,
+     * где uri - сам шаблон, а уникальные посетители считаются по всему набору URI шаблона.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getPatternStatistics(LocalDateTime start,
+                                                   LocalDateTime end,
+                                                   List<String> patterns,
+                                                   boolean unique,
+                                                   boolean grouped) {
+        checkTime(start, end);
+        Map<String, Map<String, Integer>> matches = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            matches.put(pattern, uriIndex.match(pattern));
         }
+        if (!grouped) {
+            Set<String> names = new LinkedHashSet<>();
+            matches.values().forEach(match -> names.addAll(match.keySet()));
+            log.info("Шаблоны URI {} раскрыты в {} URI", patterns, names.size());
+            return names.isEmpty() ? Collections.emptyList()
+                    : getStatistics(start, end, new ArrayList<>(names), unique);
+        }
+        List<ViewStatsDto> result = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Integer>> match : matches.entrySet()) {
+            if (match.getValue().isEmpty()) {
+                continue;
+            }
+            Map<String, Long> hits = new HashMap<>();
+            if (unique) {
+                Map<Integer, Long> counts = hitStorage.countByApp(start, end, match.getValue().values(), true);
+                Map<Integer, String> apps = statDictionary.findAppNames(counts.keySet());
+                counts.forEach((appId, count) -> hits.put(apps.get(appId), count));
+            } else {
+                getStatistics(start, end, new ArrayList<>(match.getValue().keySet()), false)
+                        .forEach(viewStats -> hits.merge(viewStats.getApp(), viewStats.getHits(), Long::sum));
+            }
+            hits.forEach((app, count) -> result.add(new ViewStatsDto(app, match.getKey(), count)));
+        }
+        log.info("Получена статистика по шаблонам URI {} с группировкой по шаблону", patterns);
+        result.sort(Comparator.comparingLong(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getApproxUniqueStatistics(LocalDateTime start,
+                                                        LocalDateTime end,
+                                                        List<String> uris) {
+        checkTime(start, end);
+        if (!approxStatService.isEnabled()) {
+            log.warn("Приближённый подсчёт выключен, статистика уникальных обращений будет посчитана точно");
+            return getStatistics(start, end, uris, true);
+        }
+        log.info("Получить приближённую статистику уникальных обращений, согласно списку URI: {}", uris);
+        return approxStatService.getUniqueStatistics(start, end, uris);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStatistics(LocalDateTime start,
+                                 LocalDateTime end,
+                                 List<String> uris,
+                                 boolean unique,
+                                 Consumer<ViewStatsDto> consumer) {
+        checkTime(start, end);
+        Collection<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = statDictionary.findUriIds(uris).values();
+            if (uriIds.isEmpty()) {
+                return;
+            }
+        }
+        log.info("Выгрузить потоком статистику обращений, unique = {}, согласно списку URI: {}", unique, uris);
+        hitStorage.stream(start, end, uriIds, unique, count -> consumer.accept(new ViewStatsDto(
+                statDictionary.findAppNames(List.of(count.getAppId())).get(count.getAppId()),
+                statDictionary.findUris(List.of(count.getUriId())).get(count.getUriId()),
+                count.getHits())));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<EntityStatsDto> getEntityStatistics(LocalDateTime start,
+                                                    LocalDateTime end,
+                                                    Route route,
+                                                    List<Long> ids,
+                                                    Long idFrom,
+                                                    Long idTo,
+                                                    boolean unique) {
+        checkTime(start, end);
+        boolean hot = hotWindowStore.covers(start, end);
+        if (ids != null && !ids.isEmpty()) {
+            log.info("Получить статистику маршрута {} по идентификаторам: {}", route, ids);
+            if (hot) {
+                Set<Long> idSet = new HashSet<>(ids);
+                return hotWindowStore.getEntityStatistics(start, end, route, idSet::contains, unique);
+            }
+            return hitStorage.aggregateEntities(start, end, route.getId(), ids, unique);
+        }
+        if (idFrom == null || idTo == null || idFrom > idTo) {
+            log.error("Не задан список идентификаторов или корректный диапазон: {} - {}", idFrom, idTo);
+            throw new ValidationException("Нужно передать ids либо idFrom и idTo, причём idFrom <= idTo");
+        }
+        log.info("Получить статистику маршрута {} по диапазону идентификаторов {} - {}", route, idFrom, idTo);
+        if (hot) {
+            return hotWindowStore.getEntityStatistics(start, end, route, id -> id >= idFrom && id <= idTo, unique);
+        }
+        return hitStorage.aggregateEntityRange(start, end, route.getId(), idFrom, idTo, unique);
+    }
+
+    private List<ViewStatsDto> mapToViewStatsDto(List<HitCount> counts) {
+        Map<Integer, String> apps = statDictionary.findAppNames(counts.stream()
+                .map(HitCount::getAppId)
+                .collect(Collectors.toSet()));
+        Map<Integer, String> uris = statDictionary.findUris(counts.stream()
+                .map(HitCount::getUriId)
+                .collect(Collectors.toSet()));
+        return StatMapper.mapToViewStatsDto(counts, apps, uris);
     }
 
     private void checkTime(LocalDateTime start, LocalDateTime end) {
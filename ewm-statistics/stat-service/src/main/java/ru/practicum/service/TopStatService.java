@@ -0,0 +1,10 @@
+package ru.practicum.service;
+
+import ru.practicum.TopStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TopStatService {
+    List<TopStatsDto> getTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique);
+}
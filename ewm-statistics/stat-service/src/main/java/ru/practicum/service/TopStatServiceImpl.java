@@ -0,0 +1,132 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.HitDto;
+import ru.practicum.TopStatsDto;
+import ru.practicum.dictionary.StatDictionary;
+import ru.practicum.enums.Granularity;
+import ru.practicum.ingest.HitListener;
+import ru.practicum.model.HitCount;
+import ru.practicum.model.StatKey;
+import ru.practicum.repository.TopKRepository;
+import ru.practicum.sketch.SpaceSaving;
+import ru.practicum.storage.HitStorage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Топ самых посещаемых URI по Space-Saving скетчам за день и за час (таблица hit_topk).
+ * Неполные часы на краях диапазона досчитываются из hits точно и добавляются в скетч.
+ * Уникальные посетители, короткие окна и limit больше ёмкости скетча считаются точным запросом к хранилищу обращений.
+ */
+@Service
+@Slf4j
+public class TopStatServiceImpl implements TopStatService, HitListener {
+
+    private static final Granularity[] LEVELS = {Granularity.DAY, Granularity.HOUR};
+    private static final Comparator<Map.Entry<Granularity, LocalDateTime>> BUCKET_ORDER = Map.Entry
+            .<Granularity, LocalDateTime>comparingByKey()
+            .thenComparing(Map.Entry.comparingByValue());
+
+    private final TopKRepository topKRepository;
+    private final HitStorage hitStorage;
+    private final StatDictionary statDictionary;
+    private final boolean enabled;
+    private final int capacity;
+    private final long exactMaxHours;
+
+    public TopStatServiceImpl(TopKRepository topKRepository,
+                              HitStorage hitStorage,
+                              StatDictionary statDictionary,
+                              @Value("${stat.topk.enabled:false}") boolean enabled,
+                              @Value("${stat.topk.capacity:1000}") int capacity,
+                              @Value("${stat.topk.exact-max-hours:24}") long exactMaxHours) {
+        this.topKRepository = topKRepository;
+        this.hitStorage = hitStorage;
+        this.statDictionary = statDictionary;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.exactMaxHours = exactMaxHours;
+    }
+
+    @Override
+    public void onHits(List<HitDto> hits) {
+        if (!enabled) {
+            return;
+        }
+        Map<Map.Entry<Granularity, LocalDateTime>, Map<StatKey, Long>> countsByBucket = new TreeMap<>(BUCKET_ORDER);
+        for (HitDto hit : hits) {
+            StatKey key = new StatKey(hit.getApp(), hit.getUri());
+            for (Granularity granularity : LEVELS) {
+                countsByBucket.computeIfAbsent(Map.entry(granularity, granularity.floor(hit.getTimestamp())),
+                        bucket -> new HashMap<>()).merge(key, 1L, Long::sum);
+            }
+        }
+        byte[] empty = new SpaceSaving(capacity).toBytes();
+        countsByBucket.forEach((bucket, counts) -> {
+            SpaceSaving sketch = SpaceSaving.fromBytes(
+                    topKRepository.lockSketch(bucket.getKey(), bucket.getValue(), empty), capacity);
+            counts.forEach(sketch::add);
+            topKRepository.updateSketch(bucket.getKey(), bucket.getValue(), sketch.toBytes());
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TopStatsDto> getTop(LocalDateTime start, LocalDateTime end, int limit, boolean unique) {
+        LocalDateTime to = end.plus(1, ChronoUnit.MICROS);
+        if (!enabled || unique || limit > capacity || Duration.between(start, to).toHours() < exactMaxHours) {
+            log.info("Получить точный топ {} URI c {} по {}, unique = {}", limit, start, end, unique);
+            List<HitCount> counts = hitStorage.top(start, end, limit, unique);
+            Map<Integer, String> apps = statDictionary.findAppNames(counts.stream()
+                    .map(HitCount::getAppId)
+                    .collect(Collectors.toSet()));
+            Map<Integer, String> uris = statDictionary.findUris(counts.stream()
+                    .map(HitCount::getUriId)
+                    .collect(Collectors.toSet()));
+            return counts.stream()
+                    .map(count -> new TopStatsDto(apps.get(count.getAppId()), uris.get(count.getUriId()),
+                            count.getHits(), 0L))
+                    .collect(Collectors.toList());
+        }
+        log.info("Получить топ {} URI c {} по {} по скетчам", limit, start, end);
+        SpaceSaving sketch = new SpaceSaving(capacity);
+        collect(start, to, 0, sketch);
+        return sketch.top(limit).stream()
+                .map(entry -> new TopStatsDto(entry.getKey().getApp(), entry.getKey().getUri(),
+                        entry.getCount(), entry.getError()))
+                .collect(Collectors.toList());
+    }
+
+    private void collect(LocalDateTime from, LocalDateTime to, int level, SpaceSaving sketch) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == LEVELS.length) {
+            topKRepository.countRawHits(from, to, sketch::add);
+            return;
+        }
+        Granularity granularity = LEVELS[level];
+        LocalDateTime bucketFrom = granularity.ceil(from);
+        LocalDateTime bucketTo = granularity.floor(to);
+        if (!bucketFrom.isBefore(bucketTo)) {
+            collect(from, to, level + 1, sketch);
+            return;
+        }
+        collect(from, bucketFrom, level + 1, sketch);
+        topKRepository.findSketches(granularity, bucketFrom, bucketTo,
+                bytes -> sketch.merge(SpaceSaving.fromBytes(bytes, capacity)));
+        collect(bucketTo, to, level + 1, sketch);
+    }
+}
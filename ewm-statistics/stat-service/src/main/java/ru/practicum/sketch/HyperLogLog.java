@@ -0,0 +1,119 @@
+package ru.practicum.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog со 2^12 регистрами: стандартная ошибка оценки 1.04 / sqrt(4096) ~ 1.6%,
+ * т.е. примерно в 95% случаев оценка отличается от точного значения не более чем на 3.3%.
+ * Для малых мощностей (до 2.5 * 4096) используется linear counting, ошибка которого ещё меньше.
+ * Скетчи сливаются без потери точности: merge(a, b) равен скетчу объединения множеств.
+ * Сериализуется в разреженном виде, пока ненулевых регистров мало.
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION = 12;
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+    private static final int SPARSE_ENTRY_SIZE = 3;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(byte[] value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * SPARSE_ENTRY_SIZE < REGISTERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + Integer.BYTES + nonZero * SPARSE_ENTRY_SIZE);
+            buffer.put(SPARSE).putInt(nonZero);
+            for (int i = 0; i < REGISTERS; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + REGISTERS);
+        buffer.put(DENSE).put(registers);
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte[] registers = new byte[REGISTERS];
+        if (buffer.get() == DENSE) {
+            buffer.get(registers);
+        } else {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int index = buffer.getShort() & 0xFFFF;
+                registers[index] = buffer.get();
+            }
+        }
+        return new HyperLogLog(registers);
+    }
+
+    public static long hash(byte[] value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
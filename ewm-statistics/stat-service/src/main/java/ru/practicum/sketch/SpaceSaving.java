@@ -0,0 +1,156 @@
+package ru.practicum.sketch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.model.StatKey;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving на capacity счётчиков для поиска самых частых (app, uri).
+ * Для каждого ключа хранится оценка count сверху и ошибка error: истинное число обращений
+ * лежит в [count - error, count], а error не превышает total / capacity.
+ * Ключ, которого нет в скетче, встречался не чаще минимального счётчика заполненного скетча.
+ * Скетчи сливаются по схеме Agarwal et al. с сохранением этих гарантий.
+ */
+public class SpaceSaving {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::getCount)
+            .thenComparing(entry -> entry.getKey().getApp())
+            .thenComparing(entry -> entry.getKey().getUri());
+
+    private final int capacity;
+    private final Map<StatKey, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> ordered = new TreeSet<>(ORDER);
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void add(StatKey key, long weight) {
+        total += weight;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            ordered.remove(entry);
+            entry.count += weight;
+            ordered.add(entry);
+            return;
+        }
+        if (entries.size() < capacity) {
+            put(new Entry(key, weight, 0));
+            return;
+        }
+        Entry min = ordered.pollFirst();
+        entries.remove(min.getKey());
+        put(new Entry(key, min.getCount() + weight, min.getCount()));
+    }
+
+    public void merge(SpaceSaving other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+        Set<StatKey> keys = new HashSet<>(entries.keySet());
+        keys.addAll(other.entries.keySet());
+        List<Entry> merged = new ArrayList<>(keys.size());
+        for (StatKey key : keys) {
+            Entry a = entries.get(key);
+            Entry b = other.entries.get(key);
+            merged.add(new Entry(key,
+                    (a != null ? a.getCount() : thisMin) + (b != null ? b.getCount() : otherMin),
+                    (a != null ? a.getError() : thisMin) + (b != null ? b.getError() : otherMin)));
+        }
+        merged.sort(ORDER.reversed());
+        entries.clear();
+        ordered.clear();
+        merged.stream().limit(capacity).forEach(this::put);
+        total += other.total;
+    }
+
+    public List<Entry> top(int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry entry : ordered.descendingSet()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Верхняя граница числа обращений к любому ключу, не попавшему в скетч.
+     */
+    public long minCount() {
+        return entries.size() < capacity || ordered.isEmpty() ? 0 : ordered.first().getCount();
+    }
+
+    public byte[] toBytes() {
+        List<byte[]> names = new ArrayList<>(entries.size() * 2);
+        int size = Long.BYTES + Integer.BYTES;
+        for (Entry entry : ordered) {
+            byte[] app = entry.getKey().getApp().getBytes(StandardCharsets.UTF_8);
+            byte[] uri = entry.getKey().getUri().getBytes(StandardCharsets.UTF_8);
+            names.add(app);
+            names.add(uri);
+            size += 2 * Integer.BYTES + app.length + uri.length + 2 * Long.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(total).putInt(entries.size());
+        int index = 0;
+        for (Entry entry : ordered) {
+            byte[] app = names.get(index++);
+            byte[] uri = names.get(index++);
+            buffer.putInt(app.length).put(app).putInt(uri.length).put(uri)
+                    .putLong(entry.getCount()).putLong(entry.getError());
+        }
+        return buffer.array();
+    }
+
+    public static SpaceSaving fromBytes(byte[] bytes, int capacity) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        SpaceSaving sketch = new SpaceSaving(capacity);
+        sketch.total = buffer.getLong();
+        int count = buffer.getInt();
+        List<Entry> stored = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String app = readString(buffer);
+            String uri = readString(buffer);
+            stored.add(new Entry(new StatKey(app, uri), buffer.getLong(), buffer.getLong()));
+        }
+        stored.sort(ORDER.reversed());
+        stored.stream().limit(capacity).forEach(sketch::put);
+        return sketch;
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.getKey(), entry);
+        ordered.add(entry);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final StatKey key;
+        private long count;
+        private final long error;
+    }
+}
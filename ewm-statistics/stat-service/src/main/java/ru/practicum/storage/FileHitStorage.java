@@ -0,0 +1,386 @@
+package ru.practicum.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.entity.Hit;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.HitCount;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Встроенное файловое хранилище обращений в духе LSM: каждый пакет записи становится неизменяемым
+ * сегментом, отсортированным по времени, а фоновое слияние объединяет самые мелкие сегменты,
+ * когда их становится больше max-segments. Запрос пропускает сегменты по их min/max времени
+ * и находит границы диапазона внутри сегмента двоичным поиском.
+ * Таблицу hits читают и производные структуры (агрегаты, битовые карты, скетчи, горячее окно,
+ * партиции, лента изменений), поэтому с включённой любой из них приложение не стартует.
+ * Не стартует оно и с журналом stat.wal: его позиция фиксируется вместе с транзакцией БД,
+ * а сегмент публикуется уже после коммита, и падение между ними потеряло бы обращения.
+ * Внутри транзакции записи сегмент пишется во временный файл и становится виден только после коммита,
+ * а при откате удаляется, поэтому повторная отправка откатившегося пакета не задваивает обращения.
+ */
+@Component
+@ConditionalOnProperty(name = "stat.storage.engine", havingValue = "file")
+@Slf4j
+public class FileHitStorage implements HitStorage {
+
+    private static final Comparator<FileSegment.Row> TIME_ORDER = Comparator.comparingLong(FileSegment.Row::getTime);
+    private static final String READS_TABLE = "читает таблицу hits";
+    private static final Map<String, String> INCOMPATIBLE_FEATURES = Map.of(
+            "stat.rollup.enabled", READS_TABLE,
+            "stat.bitmap.enabled", READS_TABLE,
+            "stat.hll.enabled", READS_TABLE,
+            "stat.topk.enabled", READS_TABLE,
+            "stat.hot-window.enabled", READS_TABLE,
+            "stat.partition.enabled", READS_TABLE,
+            "stat.changes.enabled", READS_TABLE,
+            "stat.wal.enabled", "фиксирует позицию журнала в транзакции БД, до публикации сегмента");
+
+    private final Path dir;
+    private final int maxSegments;
+    private final int mergeBatch;
+    private final AtomicLong nextId = new AtomicLong();
+
+    private volatile List<FileSegment> segments = List.of();
+
+    public FileHitStorage(MeterRegistry meterRegistry,
+                          Environment environment,
+                          @Value("${stat.storage.file.dir:./data/hits}") String dir,
+                          @Value("${stat.storage.file.max-segments:64}") int maxSegments,
+                          @Value("${stat.storage.file.merge-batch:16}") int mergeBatch) {
+        INCOMPATIBLE_FEATURES.forEach((feature, reason) -> {
+            if (environment.getProperty(feature, Boolean.class, false)) {
+                throw new IllegalStateException("Свойство " + feature + " " + reason +
+                        " и несовместимо с stat.storage.engine=file");
+            }
+        });
+        this.dir = Paths.get(dir);
+        this.maxSegments = maxSegments;
+        this.mergeBatch = Math.max(2, mergeBatch);
+        Gauge.builder("stat.storage.file.segments", () -> segments.size()).register(meterRegistry);
+        Gauge.builder("stat.storage.file.rows", this::rows).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.sorted().collect(Collectors.toList());
+        }
+        Map<Long, FileSegment> opened = new HashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(FileSegment.TMP_SUFFIX)) {
+                Files.delete(file);
+            } else if (name.endsWith(FileSegment.SUFFIX)) {
+                FileSegment segment = FileSegment.open(file);
+                opened.put(segment.getId(), segment);
+                nextId.set(Math.max(nextId.get(), segment.getId() + 1));
+            }
+        }
+        for (FileSegment segment : List.copyOf(opened.values())) {
+            for (long source : segment.getSources()) {
+                FileSegment merged = opened.remove(source);
+                if (merged != null) {
+                    log.warn("Сегмент обращений {} уже слит в {}, удаляется", source, segment.getId());
+                    merged.delete();
+                }
+            }
+        }
+        segments = List.copyOf(opened.values());
+        log.info("Файловое хранилище обращений открыто: {}, сегментов {}, обращений {}", dir, segments.size(), rows());
+    }
+
+    @Override
+    public boolean isTable() {
+        return false;
+    }
+
+    @Override
+    public void append(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        List<FileSegment.Row> rows = hits.stream()
+                .map(hit -> new FileSegment.Row(toMicros(hit.getTimestamp()), hit.getAppId(), hit.getUriId(),
+                        hit.getRouteId() != null ? hit.getRouteId() : 0,
+                        hit.getEntityId() != null ? hit.getEntityId() : 0, hit.getIp()))
+                .sorted(TIME_ORDER)
+                .collect(Collectors.toList());
+        Path prepared;
+        try {
+            prepared = FileSegment.prepare(dir, nextId.getAndIncrement(), rows, new long[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать сегмент обращений", e);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(prepared);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(prepared);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    discard(prepared);
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<HitCount> aggregate(LocalDateTime start,
+                                    LocalDateTime end,
+                                    Collection<Integer> uriIds,
+                                    boolean unique) {
+        Set<Integer> filter = uriIds != null ? new HashSet<>(uriIds) : null;
+        Counts counts = new Counts(unique);
+        scan(toMicros(start), toMicros(end), (segment, app, uri, row) -> {
+            if (filter == null || filter.contains(uri)) {
+                counts.add(((long) app << 32) | uri, segment, row);
+            }
+        });
+        List<HitCount> result = new ArrayList<>();
+        counts.forEach((key, hits) -> result.add(new HitCount((int) (key >>> 32), (int) (long) key, hits)));
+        result.sort(Comparator.comparingLong(HitCount::getHits).reversed());
+        return result;
+    }
+
+    @Override
+    public Map<Integer, Long> countByApp(LocalDateTime start,
+                                         LocalDateTime end,
+                                         Collection<Integer> uriIds,
+                                         boolean unique) {
+        Set<Integer> filter = new HashSet<>(uriIds);
+        Counts counts = new Counts(unique);
+        scan(toMicros(start), toMicros(end), (segment, app, uri, row) -> {
+            if (filter.contains(uri)) {
+                counts.add(app, segment, row);
+            }
+        });
+        Map<Integer, Long> result = new HashMap<>();
+        counts.forEach((app, hits) -> result.put((int) (long) app, hits));
+        return result;
+    }
+
+    /**
+     * Бакеты шагов DAY, HOUR и MINUTE выровнены по эпохе UTC, поэтому бакет строки - её время,
+     * округлённое вниз до длины шага.
+     */
+    @Override
+    public void countBuckets(Granularity step,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             Collection<Integer> uriIds,
+                             boolean unique,
+                             BucketCountConsumer consumer) {
+        long width = step.getUnit().getDuration().toNanos() / 1_000;
+        Set<Integer> filter = uriIds != null ? new HashSet<>(uriIds) : null;
+        Map<Long, Counts> buckets = new HashMap<>();
+        scan(toMicros(from), toMicros(to) - 1, (segment, app, uri, row) -> {
+            if (filter == null || filter.contains(uri)) {
+                buckets.computeIfAbsent(Math.floorDiv(segment.time(row), width) * width, k -> new Counts(unique))
+                        .add(((long) app << 32) | uri, segment, row);
+            }
+        });
+        buckets.forEach((bucket, counts) -> counts.forEach((key, hits) ->
+                consumer.accept((int) (key >>> 32), (int) key, fromMicros(bucket), hits)));
+    }
+
+    @Override
+    public List<EntityStatsDto> aggregateEntities(LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  int routeId,
+                                                  Collection<Long> ids,
+                                                  boolean unique) {
+        Set<Long> filter = new HashSet<>(ids);
+        return aggregateEntities(start, end, routeId, filter::contains, unique);
+    }
+
+    @Override
+    public List<EntityStatsDto> aggregateEntityRange(LocalDateTime start,
+                                                     LocalDateTime end,
+                                                     int routeId,
+                                                     long idFrom,
+                                                     long idTo,
+                                                     boolean unique) {
+        return aggregateEntities(start, end, routeId, id -> id >= idFrom && id <= idTo, unique);
+    }
+
+    /**
+     * Сливает merge-batch самых мелких сегментов в один, пока сегментов больше max-segments.
+     * Новый сегмент хранит номера исходных, поэтому падение до их удаления не задваивает обращения.
+     */
+    @Scheduled(fixedDelayString = "${stat.storage.file.compact-interval-ms:10000}")
+    public void compact() {
+        while (segments.size() > maxSegments) {
+            List<FileSegment> picked = segments.stream()
+                    .sorted(Comparator.comparingInt(FileSegment::getCount))
+                    .limit(mergeBatch)
+                    .collect(Collectors.toList());
+            List<FileSegment.Row> rows = new ArrayList<>();
+            picked.forEach(segment -> segment.readRows(rows));
+            rows.sort(TIME_ORDER);
+            FileSegment merged = write(rows, picked.stream().mapToLong(FileSegment::getId).toArray());
+            synchronized (this) {
+                List<FileSegment> next = new ArrayList<>(segments);
+                next.removeAll(picked);
+                next.add(merged);
+                segments = List.copyOf(next);
+            }
+            for (FileSegment segment : picked) {
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить слитый сегмент обращений {}", segment.getId(), e);
+                }
+            }
+            log.info("Слито сегментов обращений: {}, строк: {}", picked.size(), rows.size());
+        }
+    }
+
+    private List<EntityStatsDto> aggregateEntities(LocalDateTime start,
+                                                   LocalDateTime end,
+                                                   int routeId,
+                                                   LongPredicate ids,
+                                                   boolean unique) {
+        Counts counts = new Counts(unique);
+        scan(toMicros(start), toMicros(end), (segment, app, uri, row) -> {
+            if (segment.route(row) == routeId && ids.test(segment.entity(row))) {
+                counts.add(segment.entity(row), segment, row);
+            }
+        });
+        List<EntityStatsDto> result = new ArrayList<>();
+        counts.forEach((id, hits) -> result.add(new EntityStatsDto(id, hits)));
+        return result;
+    }
+
+    /**
+     * Обходит строки со временем в [from, to] всех сегментов, пересекающихся с диапазоном.
+     */
+    private void scan(long from, long to, RowVisitor visitor) {
+        for (FileSegment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                segment.scan(from, to, (app, uri, row) -> visitor.accept(segment, app, uri, row));
+            }
+        }
+    }
+
+    private void publish(Path prepared) {
+        FileSegment segment;
+        try {
+            segment = FileSegment.publish(prepared);
+        } catch (IOException e) {
+            discard(prepared);
+            throw new UncheckedIOException("Не удалось опубликовать сегмент обращений " + prepared, e);
+        }
+        synchronized (this) {
+            List<FileSegment> next = new ArrayList<>(segments);
+            next.add(segment);
+            segments = List.copyOf(next);
+        }
+    }
+
+    private void discard(Path prepared) {
+        try {
+            Files.deleteIfExists(prepared);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить неопубликованный сегмент обращений {}", prepared, e);
+        }
+    }
+
+    private FileSegment write(List<FileSegment.Row> rows, long[] sources) {
+        try {
+            return FileSegment.write(dir, nextId.getAndIncrement(), rows, sources);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать сегмент обращений", e);
+        }
+    }
+
+    private long rows() {
+        long rows = 0;
+        for (FileSegment segment : segments) {
+            rows += segment.getCount();
+        }
+        return rows;
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), 0, ZoneOffset.UTC)
+                .plus(Math.floorMod(micros, 1_000_000), ChronoUnit.MICROS);
+    }
+
+    private interface RowVisitor {
+        void accept(FileSegment segment, int app, int uri, int row);
+    }
+
+    /**
+     * Счётчики по ключу: число строк или, при unique, число различных IP.
+     */
+    private static class Counts {
+        private final boolean unique;
+        private final Map<Long, long[]> hits = new HashMap<>();
+        private final Map<Long, Set<ByteBuffer>> visitors = new HashMap<>();
+
+        Counts(boolean unique) {
+            this.unique = unique;
+        }
+
+        void add(long key, FileSegment segment, int row) {
+            if (unique) {
+                visitors.computeIfAbsent(key, k -> new HashSet<>()).add(ByteBuffer.wrap(segment.ip(row)));
+            } else {
+                hits.computeIfAbsent(key, k -> new long[1])[0]++;
+            }
+        }
+
+        void forEach(KeyCountConsumer consumer) {
+            hits.forEach((key, count) -> consumer.accept(key, count[0]));
+            visitors.forEach((key, ips) -> consumer.accept(key, ips.size()));
+        }
+    }
+
+    private interface KeyCountConsumer {
+        void accept(long key, long count);
+    }
+}
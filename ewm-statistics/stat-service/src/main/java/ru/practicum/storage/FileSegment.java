@@ -0,0 +1,223 @@
+package ru.practicum.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Неизменяемый сегмент обращений, отсортированный по времени и целиком отображённый в память.
+ * Заголовок: [MAGIC][число строк][min время][max время][число исходных сегментов][их номера],
+ * затем колонки: время в микросекундах от эпохи, app_id, uri_id, route_id (0 - вне маршрутов), entity_id
+ * и IP фиксированной ширины.
+ * Номера исходных сегментов пишет слияние: если процесс упал до их удаления, они удаляются при открытии.
+ */
+class FileSegment {
+
+    static final String SUFFIX = ".seg";
+    static final String TMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x48495432;
+    private static final int IP_BYTES = 16;
+    private static final int IP_STRIDE = 1 + IP_BYTES;
+    private static final int ROW_BYTES = 2 * Long.BYTES + 3 * Integer.BYTES + IP_STRIDE;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long minTime;
+    private final long maxTime;
+    private final long[] sources;
+    private final int timesAt;
+    private final int appsAt;
+    private final int urisAt;
+    private final int routesAt;
+    private final int entitiesAt;
+    private final int ipsAt;
+
+    private FileSegment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Файл не является сегментом обращений: " + path);
+        }
+        this.count = buffer.getInt(Integer.BYTES);
+        this.minTime = buffer.getLong(2 * Integer.BYTES);
+        this.maxTime = buffer.getLong(2 * Integer.BYTES + Long.BYTES);
+        int sourcesAt = 2 * Integer.BYTES + 2 * Long.BYTES;
+        this.sources = new long[buffer.getInt(sourcesAt)];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = buffer.getLong(sourcesAt + Integer.BYTES + i * Long.BYTES);
+        }
+        this.timesAt = sourcesAt + Integer.BYTES + sources.length * Long.BYTES;
+        this.appsAt = timesAt + count * Long.BYTES;
+        this.urisAt = appsAt + count * Integer.BYTES;
+        this.routesAt = urisAt + count * Integer.BYTES;
+        this.entitiesAt = routesAt + count * Integer.BYTES;
+        this.ipsAt = entitiesAt + count * Long.BYTES;
+        if (buffer.capacity() != ipsAt + count * IP_STRIDE) {
+            throw new IllegalStateException("Неверный размер сегмента обращений: " + path);
+        }
+    }
+
+    static Path path(Path dir, long id) {
+        return dir.resolve(String.format("%020d%s", id, SUFFIX));
+    }
+
+    static long parseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Пишет строки, уже отсортированные по времени, во временный файл и атомарно переименовывает его,
+     * поэтому недописанный сегмент никогда не виден под своим именем.
+     */
+    static FileSegment write(Path dir, long id, List<Row> rows, long[] sources) throws IOException {
+        return publish(prepare(dir, id, rows, sources));
+    }
+
+    /**
+     * Пишет сегмент во временный файл и сбрасывает его на диск; под своим именем он появится после {@link #publish}.
+     * Временные файлы удаляются при открытии хранилища.
+     */
+    static Path prepare(Path dir, long id, List<Row> rows, long[] sources) throws IOException {
+        int headerSize = 3 * Integer.BYTES + 2 * Long.BYTES + sources.length * Long.BYTES;
+        ByteBuffer data = ByteBuffer.allocate(headerSize + rows.size() * ROW_BYTES);
+        data.putInt(MAGIC).putInt(rows.size())
+                .putLong(rows.isEmpty() ? 0 : rows.get(0).getTime())
+                .putLong(rows.isEmpty() ? 0 : rows.get(rows.size() - 1).getTime())
+                .putInt(sources.length);
+        for (long source : sources) {
+            data.putLong(source);
+        }
+        rows.forEach(row -> data.putLong(row.getTime()));
+        rows.forEach(row -> data.putInt(row.getApp()));
+        rows.forEach(row -> data.putInt(row.getUri()));
+        rows.forEach(row -> data.putInt(row.getRoute()));
+        rows.forEach(row -> data.putLong(row.getEntity()));
+        for (Row row : rows) {
+            data.put((byte) row.getIp().length).put(row.getIp());
+            data.position(data.position() + IP_BYTES - row.getIp().length);
+        }
+        data.flip();
+        Path tmp = dir.resolve(path(dir, id).getFileName() + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+        return tmp;
+    }
+
+    static FileSegment publish(Path tmp) throws IOException {
+        String name = tmp.getFileName().toString();
+        Path path = tmp.resolveSibling(name.substring(0, name.length() - TMP_SUFFIX.length()));
+        return open(Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE));
+    }
+
+    static FileSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new FileSegment(parseId(path), path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long[] getSources() {
+        return sources;
+    }
+
+    boolean overlaps(long from, long to) {
+        return count > 0 && minTime <= to && maxTime >= from;
+    }
+
+    /**
+     * Передаёт consumer строки со временем в [from, to]; границы находятся двоичным поиском.
+     */
+    void scan(long from, long to, RowConsumer consumer) {
+        for (int row = lowerBound(from); row < count && time(row) <= to; row++) {
+            consumer.accept(buffer.getInt(appsAt + row * Integer.BYTES),
+                    buffer.getInt(urisAt + row * Integer.BYTES), row);
+        }
+    }
+
+    byte[] ip(int row) {
+        int at = ipsAt + row * IP_STRIDE;
+        byte[] ip = new byte[buffer.get(at)];
+        for (int i = 0; i < ip.length; i++) {
+            ip[i] = buffer.get(at + 1 + i);
+        }
+        return ip;
+    }
+
+    void readRows(List<Row> rows) {
+        for (int row = 0; row < count; row++) {
+            rows.add(new Row(time(row), buffer.getInt(appsAt + row * Integer.BYTES),
+                    buffer.getInt(urisAt + row * Integer.BYTES), route(row), entity(row), ip(row)));
+        }
+    }
+
+    long time(int row) {
+        return buffer.getLong(timesAt + row * Long.BYTES);
+    }
+
+    int route(int row) {
+        return buffer.getInt(routesAt + row * Integer.BYTES);
+    }
+
+    long entity(int row) {
+        return buffer.getLong(entitiesAt + row * Long.BYTES);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private int lowerBound(long from) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (time(middle) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    interface RowConsumer {
+        void accept(int app, int uri, int row);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Row {
+        private final long time;
+        private final int app;
+        private final int uri;
+        private final int route;
+        private final long entity;
+        private final byte[] ip;
+    }
+}
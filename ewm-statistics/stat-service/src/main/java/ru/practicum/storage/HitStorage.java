@@ -0,0 +1,84 @@
+package ru.practicum.storage;
+
+import ru.practicum.EntityStatsDto;
+import ru.practicum.entity.Hit;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.HitCount;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище сырых обращений: запись и подсчёт по (app, uri) за диапазон [start, end].
+ * Реализация выбирается свойством stat.storage.engine: jpa (по умолчанию) или file.
+ * Словари apps и uris, агрегаты и прочие производные таблицы остаются в БД при любом движке.
+ */
+public interface HitStorage {
+    /**
+     * Лежат ли обращения в таблице hits: только её читают агрегаты, битовые карты, скетчи,
+     * горячее окно, партиционирование и лента изменений.
+     */
+    boolean isTable();
+
+    void append(List<Hit> hits);
+
+    /**
+     * @param uriIds фильтр по URI или null, если нужны все
+     */
+    List<HitCount> aggregate(LocalDateTime start, LocalDateTime end, Collection<Integer> uriIds, boolean unique);
+
+    /**
+     * То же, что {@link #aggregate}, но строки передаются consumer по мере чтения, по убыванию числа обращений.
+     */
+    default void stream(LocalDateTime start,
+                        LocalDateTime end,
+                        Collection<Integer> uriIds,
+                        boolean unique,
+                        Consumer<HitCount> consumer) {
+        aggregate(start, end, uriIds, unique).forEach(consumer);
+    }
+
+    /**
+     * Первые limit пар (app, uri) по убыванию числа обращений за [start, end].
+     */
+    default List<HitCount> top(LocalDateTime start, LocalDateTime end, int limit, boolean unique) {
+        List<HitCount> counts = aggregate(start, end, null, unique);
+        return counts.size() > limit ? counts.subList(0, limit) : counts;
+    }
+
+    /**
+     * Число обращений к набору URI по приложениям; при unique посетитель считается один раз на весь набор.
+     */
+    Map<Integer, Long> countByApp(LocalDateTime start, LocalDateTime end, Collection<Integer> uriIds, boolean unique);
+
+    /**
+     * Число обращений по (app, uri) и бакетам шага step за полуинтервал [from, to).
+     */
+    void countBuckets(Granularity step,
+                      LocalDateTime from,
+                      LocalDateTime to,
+                      Collection<Integer> uriIds,
+                      boolean unique,
+                      BucketCountConsumer consumer);
+
+    List<EntityStatsDto> aggregateEntities(LocalDateTime start,
+                                           LocalDateTime end,
+                                           int routeId,
+                                           Collection<Long> ids,
+                                           boolean unique);
+
+    List<EntityStatsDto> aggregateEntityRange(LocalDateTime start,
+                                              LocalDateTime end,
+                                              int routeId,
+                                              long idFrom,
+                                              long idTo,
+                                              boolean unique);
+
+    @FunctionalInterface
+    interface BucketCountConsumer {
+        void accept(int appId, int uriId, LocalDateTime bucket, long hits);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.entity.Hit;
+import ru.practicum.enums.Granularity;
+import ru.practicum.model.HitCount;
+import ru.practicum.repository.SeriesRepository;
+import ru.practicum.repository.StatRepository;
+import ru.practicum.repository.TopKRepository;
+import ru.practicum.service.ShardedStatService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Обращения в таблице hits; длинные диапазоны при включённом stat.parallel считаются по частям параллельно.
+ */
+@Component
+@ConditionalOnProperty(name = "stat.storage.engine", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class JpaHitStorage implements HitStorage {
+
+    private final StatRepository statRepository;
+    private final SeriesRepository seriesRepository;
+    private final TopKRepository topKRepository;
+    private final ShardedStatService shardedStatService;
+
+    @Override
+    public boolean isTable() {
+        return true;
+    }
+
+    @Override
+    public void append(List<Hit> hits) {
+        statRepository.saveAllInBatch(hits);
+    }
+
+    @Override
+    public List<HitCount> aggregate(LocalDateTime start,
+                                    LocalDateTime end,
+                                    Collection<Integer> uriIds,
+                                    boolean unique) {
+        if (shardedStatService.isApplicable(start, end)) {
+            log.info("Посчитать статистику параллельно по частям диапазона, unique = {}", unique);
+            return shardedStatService.getStatistics(start, end, uriIds, unique);
+        }
+        if (uriIds != null) {
+            return unique
+                    ? statRepository.getDistinctStatisticsOfUris(start, end, uriIds)
+                    : statRepository.getStatisticsOfUris(start, end, uriIds);
+        }
+        return unique
+                ? statRepository.getDistinctStatistics(start, end)
+                : statRepository.getStatistics(start, end);
+    }
+
+    @Override
+    public void stream(LocalDateTime start,
+                       LocalDateTime end,
+                       Collection<Integer> uriIds,
+                       boolean unique,
+                       Consumer<HitCount> consumer) {
+        statRepository.streamStatistics(start, end, uriIds, unique, consumer);
+    }
+
+    @Override
+    public List<HitCount> top(LocalDateTime start, LocalDateTime end, int limit, boolean unique) {
+        return topKRepository.findTop(start, end.plus(1, ChronoUnit.MICROS), limit, unique);
+    }
+
+    @Override
+    public Map<Integer, Long> countByApp(LocalDateTime start,
+                                         LocalDateTime end,
+                                         Collection<Integer> uriIds,
+                                         boolean unique) {
+        return statRepository.countByApp(start, end, uriIds, unique);
+    }
+
+    @Override
+    public void countBuckets(Granularity step,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             Collection<Integer> uriIds,
+                             boolean unique,
+                             BucketCountConsumer consumer) {
+        seriesRepository.countRawHits(step, from, to, uriIds, unique, consumer::accept);
+    }
+
+    @Override
+    public List<EntityStatsDto> aggregateEntities(LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  int routeId,
+                                                  Collection<Long> ids,
+                                                  boolean unique) {
+        return unique
+                ? statRepository.getDistinctEntityStatistics(routeId, ids, start, end)
+                : statRepository.getEntityStatistics(routeId, ids, start, end);
+    }
+
+    @Override
+    public List<EntityStatsDto> aggregateEntityRange(LocalDateTime start,
+                                                     LocalDateTime end,
+                                                     int routeId,
+                                                     long idFrom,
+                                                     long idTo,
+                                                     boolean unique) {
+        return unique
+                ? statRepository.getDistinctEntityRangeStatistics(routeId, idFrom, idTo, start, end)
+                : statRepository.getEntityRangeStatistics(routeId, idFrom, idTo, start, end);
+    }
+}
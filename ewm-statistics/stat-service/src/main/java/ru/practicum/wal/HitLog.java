@@ -0,0 +1,269 @@
+package ru.practicum.wal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.HitDto;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал обращений перед таблицей hits: сегменты-файлы, отображённые в память,
+ * записи вида [длина][CRC32][app, uri, ip, время от эпохи].
+ * Запись считается принятой, как только она лежит в журнале; в hits её переносит {@link HitLogLoader}.
+ * Без stat.wal.sync запись переживает падение процесса, но не ОС; с ним каждый append делает force().
+ */
+@Component
+@Slf4j
+public class HitLog {
+
+    private static final int HEADER = 2 * Integer.BYTES;
+    private static final int SKIP = -1;
+    private static final int ZERO_CHUNK = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean sync;
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private LogSegment current;
+    private int position;
+    private volatile long writeOffset;
+
+    public HitLog(MeterRegistry meterRegistry,
+                  @Value("${stat.wal.enabled:false}") boolean enabled,
+                  @Value("${stat.wal.dir:./data/wal}") String dir,
+                  @Value("${stat.wal.segment-size-mb:64}") int segmentSizeMb,
+                  @Value("${stat.wal.sync:false}") boolean sync) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.sync = sync;
+        Gauge.builder("stat.wal.segments", segments, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(LogSegment.SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            LogSegment segment = LogSegment.open(dir, LogSegment.parseBase(file), segmentSize);
+            segments.put(segment.getBase(), segment);
+        }
+        if (segments.isEmpty()) {
+            current = LogSegment.open(dir, 0, segmentSize);
+            segments.put(0L, current);
+            position = 0;
+        } else {
+            current = segments.lastEntry().getValue();
+            position = recover(current);
+        }
+        writeOffset = current.getBase() + position;
+        log.info("Журнал обращений открыт: {}, сегментов {}, смещение записи {}", dir, segments.size(), writeOffset);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    public void append(HitDto hit) {
+        append(List.of(hit));
+    }
+
+    public synchronized void append(List<HitDto> hits) {
+        for (HitDto hit : hits) {
+            byte[] payload = encode(hit);
+            if (HEADER + payload.length > segmentSize) {
+                throw new IllegalArgumentException("Обращение не помещается в сегмент журнала: " + hit);
+            }
+            if (current.getSize() - position < HEADER + payload.length) {
+                roll();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer buffer = current.view();
+            buffer.position(position);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            position += HEADER + payload.length;
+        }
+        if (sync) {
+            current.force();
+        }
+        writeOffset = current.getBase() + position;
+    }
+
+    /**
+     * Читает до max записей начиная с offset и возвращает смещение сразу за последней прочитанной.
+     */
+    public long read(long offset, int max, List<HitDto> hits) {
+        long end = writeOffset;
+        long next = offset;
+        while (hits.size() < max && next < end) {
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(next);
+            if (entry == null) {
+                throw new IllegalStateException("Смещение " + next + " раньше начала журнала " + getStartOffset());
+            }
+            LogSegment segment = entry.getValue();
+            int at = (int) (next - segment.getBase());
+            ByteBuffer buffer = segment.view();
+            if (segment.getSize() - at < HEADER || buffer.getInt(at) == SKIP) {
+                next = segment.getEnd();
+                continue;
+            }
+            byte[] payload = readRecord(buffer, at);
+            if (payload == null) {
+                throw new IllegalStateException("Повреждённая запись журнала по смещению " + next);
+            }
+            hits.add(decode(payload));
+            next += HEADER + payload.length;
+        }
+        return next;
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых уже перенесены в hits.
+     */
+    public void release(long committedOffset) {
+        for (LogSegment segment : segments.values()) {
+            if (segment.getEnd() > committedOffset || segment.getBase() == segments.lastKey()) {
+                return;
+            }
+            segments.remove(segment.getBase());
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                log.warn("Не удалось удалить сегмент журнала {}", segment.getBase(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (LogSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть сегмент журнала {}", segment.getBase(), e);
+            }
+        }
+    }
+
+    private void roll() {
+        if (current.getSize() - position >= Integer.BYTES) {
+            current.view().putInt(position, SKIP);
+        }
+        current.force();
+        try {
+            current = LogSegment.open(dir, current.getEnd(), segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала", e);
+        }
+        segments.put(current.getBase(), current);
+        position = 0;
+    }
+
+    /**
+     * Находит конец последней целой записи и обнуляет хвост, оставшийся от оборванной записи.
+     */
+    private int recover(LogSegment segment) {
+        ByteBuffer buffer = segment.view();
+        int at = 0;
+        while (segment.getSize() - at >= HEADER) {
+            int length = buffer.getInt(at);
+            if (length == SKIP) {
+                return segment.getSize();
+            }
+            byte[] payload = length > 0 ? readRecord(buffer, at) : null;
+            if (payload == null) {
+                break;
+            }
+            at += HEADER + payload.length;
+        }
+        byte[] zeros = new byte[ZERO_CHUNK];
+        for (int zeroAt = at; zeroAt < segment.getSize(); zeroAt += ZERO_CHUNK) {
+            buffer.position(zeroAt);
+            buffer.put(zeros, 0, Math.min(ZERO_CHUNK, segment.getSize() - zeroAt));
+        }
+        segment.force();
+        log.info("Журнал обращений восстановлен, сегмент {} дописан до позиции {}", segment.getBase(), at);
+        return at;
+    }
+
+    private byte[] readRecord(ByteBuffer buffer, int at) {
+        int length = buffer.getInt(at);
+        if (length <= 0 || length > buffer.capacity() - at - HEADER) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.position(at + HEADER);
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(at + Integer.BYTES) ? payload : null;
+    }
+
+    private static byte[] encode(HitDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HitDto decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return HitDto.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.wal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.HitDto;
+import ru.practicum.ingest.HitWriter;
+import ru.practicum.repository.HitLogOffsetRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Переносит записи {@link HitLog} в hits пакетами. Пакет и новое подтверждённое смещение
+ * сохраняются в одной транзакции, поэтому после падения перенос продолжается ровно
+ * с последнего подтверждённого смещения, без потерь и дублей.
+ */
+@Component
+@Slf4j
+public class HitLogLoader {
+
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final HitLog hitLog;
+    private final HitWriter hitWriter;
+    private final HitLogOffsetRepository offsetRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final Counter loadedCounter;
+
+    private volatile boolean running;
+    private volatile long committed;
+    private Thread loader;
+
+    public HitLogLoader(HitLog hitLog,
+                        HitWriter hitWriter,
+                        HitLogOffsetRepository offsetRepository,
+                        TransactionTemplate transactionTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${stat.wal.batch-size:500}") int batchSize,
+                        @Value("${stat.wal.poll-interval-ms:200}") long pollIntervalMs,
+                        @Value("${stat.wal.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.hitLog = hitLog;
+        this.hitWriter = hitWriter;
+        this.offsetRepository = offsetRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.loadedCounter = meterRegistry.counter("stat.wal.loaded");
+        Gauge.builder("stat.wal.lag", this, loader -> loader.running
+                ? hitLog.getWriteOffset() - loader.committed : 0).baseUnit("bytes").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!hitLog.isEnabled()) {
+            return;
+        }
+        running = true;
+        loader = new Thread(this::runLoader, "hit-log-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        loader.interrupt();
+        loader.join(shutdownTimeoutMs);
+    }
+
+    private void runLoader() {
+        while (running && !initCommitted()) {
+            pause(RETRY_DELAY_MS);
+        }
+        log.info("Перенос журнала обращений в hits начат со смещения {}", committed);
+        List<HitDto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            batch.clear();
+            try {
+                long next = hitLog.read(committed, batchSize, batch);
+                if (next == committed) {
+                    pause(pollIntervalMs);
+                    continue;
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!batch.isEmpty()) {
+                        hitWriter.write(batch);
+                    }
+                    offsetRepository.updateCommitted(next);
+                });
+                committed = next;
+            } catch (RuntimeException e) {
+                log.error("Не удалось перенести пакет журнала, размер: {}, повтор через {} мс",
+                        batch.size(), RETRY_DELAY_MS, e);
+                pause(RETRY_DELAY_MS);
+                continue;
+            }
+            loadedCounter.increment(batch.size());
+            hitLog.release(committed);
+        }
+    }
+
+    private boolean initCommitted() {
+        try {
+            long stored = transactionTemplate.execute(status ->
+                    offsetRepository.findCommitted(hitLog.getStartOffset()));
+            if (stored < hitLog.getStartOffset() || stored > hitLog.getWriteOffset()) {
+                log.warn("Подтверждённое смещение {} вне журнала [{}, {}], перенос начнётся с начала журнала",
+                        stored, hitLog.getStartOffset(), hitLog.getWriteOffset());
+                stored = hitLog.getStartOffset();
+                long reset = stored;
+                transactionTemplate.executeWithoutResult(status -> offsetRepository.updateCommitted(reset));
+            }
+            committed = stored;
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Не удалось прочитать подтверждённое смещение журнала, повтор через {} мс", RETRY_DELAY_MS, e);
+            return false;
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
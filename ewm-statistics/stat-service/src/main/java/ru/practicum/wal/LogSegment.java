@@ -0,0 +1,79 @@
+package ru.practicum.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл журнала фиксированного размера, целиком отображённый в память.
+ * Имя файла - глобальное смещение его первого байта, поэтому смещения не зависят от удаления старых файлов.
+ */
+class LogSegment {
+
+    static final String SUFFIX = ".log";
+
+    private final long base;
+    private final int size;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private LogSegment(long base, int size, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.base = base;
+        this.size = size;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment open(Path dir, long base, int size) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", base, SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int length = channel.size() > 0 ? (int) channel.size() : size;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        return new LogSegment(base, length, path, channel, buffer);
+    }
+
+    static long parseBase(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    long getBase() {
+        return base;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    long getEnd() {
+        return base + size;
+    }
+
+    /**
+     * Независимое представление буфера: позиция у каждого потока своя.
+     */
+    ByteBuffer view() {
+        return buffer.duplicate();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
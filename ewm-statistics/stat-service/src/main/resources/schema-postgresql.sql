@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS hits (
+        id INT GENERATED ALWAYS AS IDENTITY NOT NULL,
+        app_id INT NOT NULL,
+        uri_id INT NOT NULL,
+        ip bytea NOT NULL,
+        route_id SMALLINT,
+        entity_id BIGINT,
+        created timestamp WITHOUT TIME ZONE NOT NULL,
+        PRIMARY KEY (id, created)
+) PARTITION BY RANGE (created);
+
+CREATE TABLE IF NOT EXISTS hits_default PARTITION OF hits DEFAULT;
@@ -1,7 +1,86 @@
 CREATE TABLE IF NOT EXISTS hits (
         id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY NOT NULL,
+        app_id INT NOT NULL,
+        uri_id INT NOT NULL,
+        ip bytea NOT NULL,
+        route_id SMALLINT,
+        entity_id BIGINT,
+        created timestamp WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS hits_created_idx ON hits (created);
+CREATE INDEX IF NOT EXISTS hits_uri_created_idx ON hits (uri_id, created);
+CREATE INDEX IF NOT EXISTS hits_route_entity_idx ON hits (route_id, entity_id, created);
+
+CREATE TABLE IF NOT EXISTS apps (
+        id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY NOT NULL,
+        name varchar(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS uris (
+        id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY NOT NULL,
+        name varchar(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hits_minute (
         app varchar(255) NOT NULL,
         uri varchar(255) NOT NULL,
-        ip varchar(255) NOT NULL,
-        created timestamp WITHOUT TIME ZONE NOT NULL
-);
\ No newline at end of file
+        bucket timestamp WITHOUT TIME ZONE NOT NULL,
+        hits BIGINT NOT NULL,
+        PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS hits_hour (
+        app varchar(255) NOT NULL,
+        uri varchar(255) NOT NULL,
+        bucket timestamp WITHOUT TIME ZONE NOT NULL,
+        hits BIGINT NOT NULL,
+        PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_minute_bucket_idx ON hits_minute (bucket);
+CREATE INDEX IF NOT EXISTS hits_hour_bucket_idx ON hits_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_sketches (
+        granularity varchar(16) NOT NULL,
+        app varchar(255) NOT NULL,
+        uri varchar(255) NOT NULL,
+        bucket timestamp WITHOUT TIME ZONE NOT NULL,
+        sketch bytea NOT NULL,
+        PRIMARY KEY (granularity, app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hit_sketches_bucket_idx ON hit_sketches (granularity, bucket);
+
+CREATE TABLE IF NOT EXISTS hit_topk (
+        granularity varchar(16) NOT NULL,
+        bucket timestamp WITHOUT TIME ZONE NOT NULL,
+        sketch bytea NOT NULL,
+        PRIMARY KEY (granularity, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS hit_log_offset (
+        id INT PRIMARY KEY NOT NULL,
+        committed BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ip_dictionary (
+        id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY NOT NULL,
+        ip bytea NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hit_bitmaps (
+        app varchar(255) NOT NULL,
+        uri varchar(255) NOT NULL,
+        bucket timestamp WITHOUT TIME ZONE NOT NULL,
+        bitmap bytea NOT NULL,
+        PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hit_bitmaps_bucket_idx ON hit_bitmaps (bucket);
+
+CREATE INDEX IF NOT EXISTS hits_uri_ip_idx ON hits (uri_id, ip);
+
+CREATE TABLE IF NOT EXISTS hit_ingest_lock (
+        id INT PRIMARY KEY NOT NULL
+);
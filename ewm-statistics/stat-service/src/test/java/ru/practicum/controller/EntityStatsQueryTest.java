@@ -0,0 +1,72 @@
+package ru.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.practicum.HitDto;
+import ru.practicum.service.StatService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /stats/entities/query отвечает так же, как GET /stats/entities с теми же параметрами.
+ */
+@SpringBootTest(properties = {
+        "SPRING_DATASOURCE_URL=jdbc:h2:mem:entity-stats-query",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class EntityStatsQueryTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 10, 10, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StatService statService;
+
+    @Test
+    void postMatchesGet() throws Exception {
+        statService.saveHits(List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", "10.0.0.1"),
+                hit("/events/1", "10.0.0.2"), hit("/events/2", "10.0.0.1"), hit("/events/3", "10.0.0.1")));
+
+        String expected = "[{\"id\":1,\"hits\":2},{\"id\":2,\"hits\":1}]";
+        perform(mockMvc.perform(get("/stats/entities")
+                .param("start", "2024-01-10 00:00:00")
+                .param("end", "2024-01-11 00:00:00")
+                .param("route", "events")
+                .param("ids", "1", "2")
+                .param("unique", "true")).andReturn(), expected);
+        perform(mockMvc.perform(post("/stats/entities/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"start\":\"2024-01-10 00:00:00\",\"end\":\"2024-01-11 00:00:00\"," +
+                        "\"route\":\"events\",\"ids\":[1,2],\"unique\":true}")).andReturn(), expected);
+    }
+
+    private void perform(MvcResult started, String expected) throws Exception {
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().json(expected));
+    }
+
+    private static HitDto hit(String uri, String ip) {
+        return HitDto.builder()
+                .app("test")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(TIME)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package ru.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.HitDto;
+import ru.practicum.bulkhead.Bulkheads;
+import ru.practicum.service.StatService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Потоковая выдача /stats занимает место в пуле запросов и при переполненном пуле получает 503.
+ */
+@SpringBootTest(properties = {
+        "SPRING_DATASOURCE_URL=jdbc:h2:mem:stat-stream-bulkhead",
+        "spring.jpa.show-sql=false",
+        "stat.bulkhead.enabled=true",
+        "stat.bulkhead.query.concurrency=1",
+        "stat.bulkhead.query.queue=1"
+})
+@AutoConfigureMockMvc
+class StatStreamBulkheadTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 10, 10, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StatService statService;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Test
+    void streamsInQueryPoolAndRejectsWhenFull() throws Exception {
+        statService.saveHits(List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", "10.0.0.2"),
+                hit("/events/2", "10.0.0.1")));
+
+        MvcResult started = mockMvc.perform(stream()).andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"app\":\"test\",\"uri\":\"/events/1\",\"hits\":2}\n" +
+                        "{\"app\":\"test\",\"uri\":\"/events/2\",\"hits\":1}\n"));
+
+        awaitIdle();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i++) {
+                bulkheads.query().submit(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                });
+            }
+            mockMvc.perform(stream()).andExpect(status().isServiceUnavailable());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Ответ уже отдан, но поток выдачи возвращается в пул чуть позже.
+     */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (bulkheads.query().getExecutor().getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static MockHttpServletRequestBuilder stream() {
+        return get("/stats")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .param("start", "2024-01-10 00:00:00")
+                .param("end", "2024-01-11 00:00:00");
+    }
+
+    private static HitDto hit(String uri, String ip) {
+        return HitDto.builder()
+                .app("test")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(TIME)
+                .build();
+    }
+}
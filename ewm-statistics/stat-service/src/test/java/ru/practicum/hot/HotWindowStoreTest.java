@@ -0,0 +1,95 @@
+package ru.practicum.hot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.HitDto;
+import ru.practicum.enums.Route;
+import ru.practicum.repository.HotWindowRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Горячее окно отвечает на запросы по сущностям маршрута так же, как запросы к hits,
+ * а словари вытесненных строк не съедают бюджет памяти.
+ */
+class HotWindowStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    @Test
+    void countsEntityHitsFromMemory() {
+        HotWindowStore store = store(256);
+        store.onHits(List.of(
+                hit("/events/1", "10.0.0.1"),
+                hit("/events/1", "10.0.0.1"),
+                hit("/events/001", "10.0.0.2"),
+                hit("/events/2", "10.0.0.1"),
+                hit("/events/3", "10.0.0.1"),
+                hit("/events", "10.0.0.1"),
+                hit("/events/1/comments", "10.0.0.1")));
+
+        Set<Long> ids = Set.of(1L, 2L, 4L);
+        assertThat(store.getEntityStatistics(NOW.minusHours(1), NOW, Route.EVENTS, ids::contains, false))
+                .containsExactly(new EntityStatsDto(1L, 3L), new EntityStatsDto(2L, 1L));
+        assertThat(store.getEntityStatistics(NOW.minusHours(1), NOW, Route.EVENTS, ids::contains, true))
+                .containsExactly(new EntityStatsDto(1L, 2L), new EntityStatsDto(2L, 1L));
+        assertThat(store.getEntityStatistics(NOW.minusHours(1), NOW, Route.EVENTS, id -> id >= 2 && id <= 3, false))
+                .containsExactly(new EntityStatsDto(2L, 1L), new EntityStatsDto(3L, 1L));
+    }
+
+    @Test
+    void compactsDictionariesOfEvictedRows() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HotWindowStore store = store(meterRegistry, 1);
+        LocalDateTime start = NOW.minusMinutes(30);
+        for (int i = 0; i < 50_000; i++) {
+            store.onHits(List.of(HitDto.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + i)
+                    .ip("10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff))
+                    .timestamp(start.plusNanos(i * 1_000_000L))
+                    .build()));
+        }
+
+        double rows = meterRegistry.get("stat.hot-window.rows").gauge().value();
+        assertThat(meterRegistry.get("stat.hot-window.used").gauge().value()).isLessThanOrEqualTo(1024 * 1024);
+        assertThat(rows).isGreaterThan(2_000);
+        LocalDateTime end = start.plusSeconds(60);
+        assertThat(store.getStatistics(start.plusSeconds(49), end, null, true))
+                .hasSize(1_000)
+                .allMatch(stats -> stats.getHits() == 1);
+        assertThat(store.getEntityStatistics(start.plusSeconds(49), end, Route.EVENTS, id -> true, false))
+                .hasSize(1_000)
+                .first()
+                .isEqualTo(new EntityStatsDto(49_000L, 1L));
+    }
+
+    private static HotWindowStore store(long budgetMb) {
+        return store(new SimpleMeterRegistry(), budgetMb);
+    }
+
+    private static HotWindowStore store(SimpleMeterRegistry meterRegistry, long budgetMb) {
+        HotWindowRepository repository = new HotWindowRepository(null) {
+            @Override
+            public void findHits(LocalDateTime from, HitRowConsumer consumer) {
+            }
+        };
+        HotWindowStore store = new HotWindowStore(repository, meterRegistry, true, 1, 4, budgetMb);
+        store.load();
+        return store;
+    }
+
+    private static HitDto hit(String uri, String ip) {
+        return HitDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(NOW.minusMinutes(1))
+                .build();
+    }
+}
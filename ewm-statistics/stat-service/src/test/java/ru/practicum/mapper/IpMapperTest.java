@@ -0,0 +1,29 @@
+package ru.practicum.mapper;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.exception.ValidationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IpMapperTest {
+
+    @Test
+    void mapsIpv4AndIpv6Literals() {
+        assertThat(IpMapper.toBytes("192.168.0.1")).containsExactly(192, 168, 0, 1);
+        assertThat(IpMapper.toBytes("0.0.0.0")).hasSize(4);
+        assertThat(IpMapper.toBytes("255.255.255.255")).hasSize(4);
+        assertThat(IpMapper.toBytes("2001:db8::1")).hasSize(16);
+        assertThat(IpMapper.normalize("2001:0DB8:0:0:0:0:0:1")).isEqualTo("2001:db8:0:0:0:0:0:1");
+    }
+
+    @Test
+    void rejectsAnythingThatIsNotAnIpLiteral() {
+        for (String ip : new String[]{"999.1.1.1", "256.0.0.1", "1.2.3.256", "01.2.3.4", "1.2.3", "localhost",
+                "example.com", "1.2.3.4.5", "", "2001:db8::zz"}) {
+            assertThatThrownBy(() -> IpMapper.toBytes(ip))
+                    .as(ip)
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.partition;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.service.StatService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * schema-postgresql.sql и секции hits на настоящем PostgreSQL 14: в контейнере, если доступен Docker,
+ * или на сервере из STAT_TEST_POSTGRES_URL. Без того и другого тест пропускается.
+ */
+@SpringBootTest(properties = {
+        "spring.sql.init.platform=postgresql",
+        "stat.partition.enabled=true",
+        "spring.jpa.show-sql=false"
+})
+@EnabledIf("postgresAvailable")
+class HitPartitionManagerTest {
+
+    private static final String URL = System.getenv("STAT_TEST_POSTGRES_URL");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static PostgreSQLContainer<?> container;
+
+    @Autowired
+    private StatService statService;
+
+    @Autowired
+    private HitPartitionManager partitionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    static boolean postgresAvailable() {
+        return URL != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        if (URL != null) {
+            registry.add("SPRING_DATASOURCE_URL", () -> URL);
+            registry.add("POSTGRES_USER", () -> System.getenv().getOrDefault("STAT_TEST_POSTGRES_USER", "postgres"));
+            registry.add("POSTGRES_PASSWORD", () -> System.getenv().getOrDefault("STAT_TEST_POSTGRES_PASSWORD", ""));
+        } else {
+            container = new PostgreSQLContainer<>("postgres:14-alpine");
+            container.start();
+            registry.add("SPRING_DATASOURCE_URL", container::getJdbcUrl);
+            registry.add("POSTGRES_USER", container::getUsername);
+            registry.add("POSTGRES_PASSWORD", container::getPassword);
+        }
+        registry.add("POSTGRES_DRIVER", () -> "org.postgresql.Driver");
+    }
+
+    @Test
+    void createsPartitionsAheadAndRoutesHitsIntoThem() {
+        LocalDate today = LocalDate.now();
+        assertThat(jdbcTemplate.queryForList("select c.relname from pg_inherits i " +
+                "join pg_class c on c.oid = i.inhrelid where i.inhparent = 'hits'::regclass", String.class))
+                .contains("hits_default", partition(today), partition(today.plusDays(7)));
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        statService.saveHits(List.of(hit("/events/1", "10.0.0.1", now), hit("/events/1", "10.0.0.2", now)));
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from " + partition(today) +
+                " h join uris u on u.id = h.uri_id where u.name = '/events/1'", Integer.class)).isEqualTo(2);
+        assertThat(statService.getStatistics(now.minusMinutes(1), now.plusMinutes(1), List.of("/events/1"), true))
+                .extracting(ViewStatsDto::getHits)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void movesRowsOutOfDefaultPartition() {
+        LocalDate past = LocalDate.now().minusDays(40);
+        LocalDate future = LocalDate.now().plusDays(30);
+        statService.saveHits(List.of(hit("/events/2", "10.0.0.1", past.atTime(10, 0)),
+                hit("/events/2", "10.0.0.1", past.atTime(23, 59)),
+                hit("/events/2", "10.0.0.1", future.atTime(0, 0))));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from hits_default", Integer.class)).isEqualTo(3);
+
+        partitionManager.maintain();
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from hits_default", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from " + partition(past), Integer.class))
+                .isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from " + partition(future), Integer.class))
+                .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from hits h join uris u on u.id = h.uri_id " +
+                "where u.name = '/events/2' and h.route_id = 1 and h.entity_id = 2", Integer.class)).isEqualTo(3);
+    }
+
+    private static String partition(LocalDate day) {
+        return "hits_p" + day.format(SUFFIX);
+    }
+
+    private static HitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return HitDto.builder()
+                .app("test")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.practicum.config.SchemaConfig;
+import ru.practicum.mapper.IpMapper;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Таблица hits в виде до словарей и bytea приводится к текущей схеме без потери строк,
+ * а уже сохранённые обращения к /events/{id} получают маршрут и идентификатор сущности.
+ */
+class HitSchemaMigrationTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createLegacyTable() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE hits (id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY NOT NULL, " +
+                "app varchar(255) NOT NULL, uri varchar(255) NOT NULL, ip varchar(255) NOT NULL, " +
+                "created timestamp WITHOUT TIME ZONE NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX hits_created_idx ON hits (created)");
+        insert("ewm-main-service", "/events/1", "192.168.0.1");
+        insert("ewm-main-service", "/events/1", "192.168.0.1");
+        insert("ewm-main-service", "/events", "2001:db8::1");
+        insert("other", "/events/1", "not-an-ip");
+    }
+
+    @Test
+    void movesNamesToDictionariesAndIpToBytes() {
+        new HitSchemaMigration(dataSource).migrate();
+
+        assertThat(jdbcTemplate.queryForList("select a.name || ' ' || u.name from hits h " +
+                "join apps a on a.id = h.app_id join uris u on u.id = h.uri_id order by h.id", String.class))
+                .containsExactly("ewm-main-service /events/1", "ewm-main-service /events/1",
+                        "ewm-main-service /events", "other /events/1");
+        assertThat(jdbcTemplate.queryForList("select ip from hits order by id", byte[].class))
+                .containsExactly(IpMapper.toBytes("192.168.0.1"), IpMapper.toBytes("192.168.0.1"),
+                        IpMapper.toBytes("2001:db8::1"), IpMapper.toBytes("0.0.0.0"));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from apps", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from uris", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void fillsRoutesBeforeSchemaScript() {
+        new SchemaConfig().dataSourceScriptDatabaseInitializer(dataSource, new SqlInitializationProperties())
+                .initializeDatabase();
+
+        assertThat(jdbcTemplate.queryForList("select coalesce(route_id, 0) || ':' || coalesce(entity_id, 0) " +
+                "from hits order by id", String.class))
+                .containsExactly("1:1", "1:1", "0:0", "1:1");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from ip_dictionary", Integer.class)).isZero();
+    }
+
+    @Test
+    void fillsRoutesForDictionaryTableWithoutThem() {
+        HitSchemaMigration migration = new HitSchemaMigration(dataSource);
+        migration.migrate();
+        jdbcTemplate.execute("alter table hits drop column route_id");
+        jdbcTemplate.execute("alter table hits drop column entity_id");
+        migration.migrate();
+
+        assertThat(jdbcTemplate.queryForList("select entity_id from hits where route_id = 1 order by id", Long.class))
+                .containsExactly(1L, 1L, 1L);
+    }
+
+    @Test
+    void leavesMigratedTableAlone() {
+        HitSchemaMigration migration = new HitSchemaMigration(dataSource);
+        migration.migrate();
+        migration.migrate();
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from hits", Integer.class)).isEqualTo(4);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from apps", Integer.class)).isEqualTo(2);
+    }
+
+    private void insert(String app, String uri, String ip) {
+        jdbcTemplate.update("insert into hits (app, uri, ip, created) values (?, ?, ?, ?)", app, uri, ip, T0);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.HitDto;
+import ru.practicum.service.StatService;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Компактный формат hits против прежнего: те же обращения пишутся через сервис в hits
+ * (id словарей и IP в байтах) и в таблицу со строковыми app, uri и ip, как было до словарей.
+ * Размер строк сравнивается на копиях без вторичных индексов, чтобы они не смешивались с форматом.
+ * В лог идут занятое место по DISK_SPACE_USED встроенной H2 (файловой: у in-memory оно нулевое)
+ * и время группировки по строкам и по целым.
+ */
+@SpringBootTest(properties = {
+        "SPRING_DATASOURCE_URL=jdbc:h2:file:./target/h2/storage-benchmark-${random.uuid}",
+        "spring.jpa.show-sql=false"})
+@Slf4j
+class HitStorageSizeBenchmarkTest {
+
+    private static final int HITS = 50_000;
+    private static final int URIS = 500;
+
+    @Autowired
+    private StatService statService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compactRowsTakeLessSpaceThanStringRows() {
+        LocalDateTime now = LocalDateTime.now();
+        List<HitDto> hits = new ArrayList<>(HITS);
+        for (int i = 0; i < HITS; i++) {
+            hits.add(HitDto.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + (i % URIS))
+                    .ip("192.168." + (i >> 8 & 0xff) + "." + (i & 0xff))
+                    .timestamp(now.minusSeconds(i))
+                    .build());
+        }
+        statService.saveHits(hits);
+        jdbcTemplate.execute("create table compact_hits (id int generated always as identity primary key, " +
+                "app_id int not null, uri_id int not null, ip bytea not null, " +
+                "created timestamp without time zone not null)");
+        jdbcTemplate.update("insert into compact_hits (app_id, uri_id, ip, created) " +
+                "select app_id, uri_id, ip, created from hits");
+        jdbcTemplate.execute("create table legacy_hits (id int generated always as identity primary key, " +
+                "app varchar(255) not null, uri varchar(255) not null, ip varchar(255) not null, " +
+                "created timestamp without time zone not null)");
+        jdbcTemplate.batchUpdate("insert into legacy_hits (app, uri, ip, created) values (?, ?, ?, ?)",
+                hits.stream()
+                        .map(hit -> new Object[]{hit.getApp(), hit.getUri(), hit.getIp(),
+                                Timestamp.valueOf(hit.getTimestamp())})
+                        .collect(Collectors.toList()));
+
+        jdbcTemplate.execute("checkpoint");
+        long compactBytes = diskSpace("COMPACT_HITS");
+        long legacyBytes = diskSpace("LEGACY_HITS");
+        long compactNanos = time("select app_id, uri_id, count(ip) from compact_hits group by app_id, uri_id");
+        long legacyNanos = time("select app, uri, count(ip) from legacy_hits group by app, uri");
+        log.info("{} обращений: строковый формат {} байт, компактный {} байт, hits со всеми индексами {} байт",
+                HITS, legacyBytes, compactBytes, diskSpace("HITS"));
+        log.info("Группировка по app и uri: по строкам {} мс, по целым {} мс",
+                legacyNanos / 1_000_000, compactNanos / 1_000_000);
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from compact_hits", Long.class)).isEqualTo(HITS);
+        assertThat(compactBytes).isLessThan(legacyBytes);
+    }
+
+    private long diskSpace(String table) {
+        return jdbcTemplate.queryForObject("call disk_space_used('" + table + "')", Long.class);
+    }
+
+    private long time(String sql) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long nanos = System.nanoTime();
+            jdbcTemplate.queryForList(sql);
+            best = Math.min(best, System.nanoTime() - nanos);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.HitDto;
+import ru.practicum.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пропускная способность записи: отдельные saveHit против одного пакета saveHits на встроенной H2.
+ * Цифры пишутся в лог; проверяется только, что все обращения сохранены.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@Slf4j
+class HitIngestBenchmarkTest {
+
+    private static final int HITS = 2_000;
+    private static final String APP = "benchmark";
+
+    @Autowired
+    private StatService statService;
+
+    @Test
+    void batchIngestAgainstSingleHits() {
+        LocalDateTime start = LocalDateTime.now().minusMinutes(1);
+        List<HitDto> single = hits("/bench/single");
+        List<HitDto> batch = hits("/bench/batch");
+
+        long singleNanos = System.nanoTime();
+        single.forEach(statService::saveHit);
+        singleNanos = System.nanoTime() - singleNanos;
+
+        long batchNanos = System.nanoTime();
+        statService.saveHits(batch);
+        batchNanos = System.nanoTime() - batchNanos;
+
+        log.info("Запись {} обращений: по одному {} обр/с, пакетом {} обр/с", HITS,
+                rate(singleNanos), rate(batchNanos));
+        List<ViewStatsDto> stats = statService.getStatistics(start, LocalDateTime.now().plusMinutes(1),
+                List.of("/bench/single", "/bench/batch"), false);
+        assertThat(stats).extracting(ViewStatsDto::getHits).containsExactly((long) HITS, (long) HITS);
+    }
+
+    private static List<HitDto> hits(String uri) {
+        List<HitDto> hits = new ArrayList<>(HITS);
+        for (int i = 0; i < HITS; i++) {
+            hits.add(HitDto.builder()
+                    .app(APP)
+                    .uri(uri)
+                    .ip("10.0." + (i >> 8 & 0xff) + "." + (i & 0xff))
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+        return hits;
+    }
+
+    private static long rate(long nanos) {
+        return HITS * 1_000_000_000L / Math.max(1, nanos);
+    }
+}
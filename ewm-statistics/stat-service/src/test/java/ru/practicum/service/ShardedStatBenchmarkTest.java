@@ -0,0 +1,96 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.HitDto;
+import ru.practicum.model.HitCount;
+import ru.practicum.repository.StatRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельный подсчёт по частям диапазона против одного запроса на диапазонах разной длины.
+ * Время пишется в лог; проверяется, что оба способа дают одинаковый результат.
+ */
+@SpringBootTest(properties = {
+        "SPRING_DATASOURCE_URL=jdbc:h2:mem:sharded-benchmark",
+        "spring.jpa.show-sql=false",
+        "stat.parallel.enabled=true",
+        "stat.parallel.threads=4",
+        "stat.parallel.shard-hours=24"})
+@Slf4j
+class ShardedStatBenchmarkTest {
+
+    private static final int DAYS = 60;
+    private static final int HITS = 100_000;
+    private static final int BATCH = 5_000;
+
+    @Autowired
+    private StatService statService;
+
+    @Autowired
+    private ShardedStatService shardedStatService;
+
+    @Autowired
+    private StatRepository statRepository;
+
+    @Test
+    void shardedMatchesSingleQueryAcrossRangeLengths() {
+        LocalDateTime end = LocalDateTime.now();
+        Random random = new Random(1);
+        List<HitDto> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < HITS; i++) {
+            batch.add(HitDto.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + random.nextInt(200))
+                    .ip("10.1." + random.nextInt(32) + "." + random.nextInt(256))
+                    .timestamp(end.minusSeconds(random.nextInt(DAYS * 24 * 3600)))
+                    .build());
+            if (batch.size() == BATCH) {
+                statService.saveHits(batch);
+                batch.clear();
+            }
+        }
+
+        for (int days : new int[]{2, 7, 30, DAYS}) {
+            LocalDateTime start = end.minusDays(days);
+            for (boolean unique : new boolean[]{false, true}) {
+                List<HitCount> single = new ArrayList<>();
+                long singleNanos = time(end, to -> unique
+                        ? statRepository.getDistinctStatistics(start, to)
+                        : statRepository.getStatistics(start, to), single);
+                List<HitCount> sharded = new ArrayList<>();
+                long shardedNanos = time(end, to -> shardedStatService.getStatistics(start, to, null, unique), sharded);
+                log.info("Диапазон {} дн., unique = {}: одним запросом {} мс, по частям {} мс",
+                        days, unique, singleNanos / 1_000_000, shardedNanos / 1_000_000);
+                assertThat(sharded).containsExactlyInAnyOrderElementsOf(single);
+            }
+        }
+    }
+
+    /**
+     * Лучшее время из трёх прогонов; результат последнего кладётся в result. Конец диапазона
+     * каждый раз сдвигается на микросекунду позже всех обращений, чтобы H2 не отдавал закэшированный результат.
+     */
+    private static long time(LocalDateTime end, Function<LocalDateTime, List<HitCount>> query, List<HitCount> result) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            LocalDateTime to = end.plus(i + 1, ChronoUnit.MICROS);
+            long nanos = System.nanoTime();
+            List<HitCount> counts = query.apply(to);
+            best = Math.min(best, System.nanoTime() - nanos);
+            result.clear();
+            result.addAll(counts);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyperLogLogTest {
+
+    /**
+     * Три стандартные ошибки 1.04 / sqrt(4096): за эту границу оценка не должна выходить.
+     */
+    private static final double MAX_ERROR = 3 * 1.04 / Math.sqrt(1 << HyperLogLog.PRECISION);
+
+    private final Random random = new Random(42);
+
+    @Test
+    void estimateStaysWithinErrorBoundOfExactCount() {
+        for (int size : new int[]{10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            Set<ByteBuffer> exact = new HashSet<>();
+            while (exact.size() < size) {
+                byte[] ip = randomIp();
+                sketch.add(ip);
+                exact.add(ByteBuffer.wrap(ip));
+            }
+            assertThat(relativeError(sketch.estimate(), exact.size()))
+                    .as("мощность %d, оценка %d", size, sketch.estimate())
+                    .isLessThanOrEqualTo(MAX_ERROR);
+        }
+    }
+
+    @Test
+    void duplicatesDoNotChangeEstimate() {
+        HyperLogLog sketch = new HyperLogLog();
+        byte[][] ips = new byte[1_000][];
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = randomIp();
+            sketch.add(ips[i]);
+        }
+        long estimate = sketch.estimate();
+        for (byte[] ip : ips) {
+            sketch.add(ip);
+        }
+        assertThat(sketch.estimate()).isEqualTo(estimate);
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        Set<ByteBuffer> exact = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            byte[] ip = randomIp();
+            (i % 3 == 0 ? right : left).add(ip);
+            if (i % 5 == 0) {
+                right.add(ip);
+            }
+            union.add(ip);
+            exact.add(ByteBuffer.wrap(ip));
+        }
+        left.merge(right);
+
+        assertThat(left.toBytes()).isEqualTo(union.toBytes());
+        assertThat(relativeError(left.estimate(), exact.size())).isLessThanOrEqualTo(MAX_ERROR);
+    }
+
+    @Test
+    void sparseAndDenseFormsRoundTrip() {
+        HyperLogLog sparse = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sparse.add(randomIp());
+        }
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            dense.add(randomIp());
+        }
+
+        byte[] sparseBytes = sparse.toBytes();
+        byte[] denseBytes = dense.toBytes();
+        assertThat(sparseBytes.length).isLessThan(denseBytes.length);
+        assertThat(HyperLogLog.fromBytes(sparseBytes).toBytes()).isEqualTo(sparseBytes);
+        assertThat(HyperLogLog.fromBytes(sparseBytes).estimate()).isEqualTo(sparse.estimate());
+        assertThat(HyperLogLog.fromBytes(denseBytes).toBytes()).isEqualTo(denseBytes);
+        assertThat(HyperLogLog.fromBytes(denseBytes).estimate()).isEqualTo(dense.estimate());
+        assertThat(new HyperLogLog().estimate()).isZero();
+        assertThat(HyperLogLog.fromBytes(new HyperLogLog().toBytes()).estimate()).isZero();
+    }
+
+    private byte[] randomIp() {
+        byte[] ip = new byte[4];
+        random.nextBytes(ip);
+        return ip;
+    }
+
+    private static double relativeError(long estimate, long exact) {
+        return Math.abs(estimate - exact) / (double) exact;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.StatKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+
+    private static final int CAPACITY = 100;
+    private static final int KEYS = 5_000;
+    private static final int BUCKETS = 8;
+    private static final int HITS_PER_BUCKET = 50_000;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void mergedSketchKeepsExactCountsWithinBounds() {
+        Map<StatKey, Long> exact = new HashMap<>();
+        List<SpaceSaving> buckets = new ArrayList<>();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            SpaceSaving sketch = new SpaceSaving(CAPACITY);
+            for (int i = 0; i < HITS_PER_BUCKET; i++) {
+                StatKey key = zipfKey(bucket);
+                sketch.add(key, 1);
+                exact.merge(key, 1L, Long::sum);
+            }
+            buckets.add(sketch);
+        }
+        SpaceSaving merged = new SpaceSaving(CAPACITY);
+        buckets.forEach(merged::merge);
+
+        assertBounds(merged, exact);
+        assertBounds(SpaceSaving.fromBytes(merged.toBytes(), CAPACITY), exact);
+    }
+
+    @Test
+    void singleSketchIsExactWhileUnderCapacity() {
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        for (int i = 0; i < 10; i++) {
+            sketch.add(new StatKey("app", "/events/" + i), i + 1);
+        }
+        List<SpaceSaving.Entry> top = sketch.top(3);
+        assertThat(top).extracting(SpaceSaving.Entry::getCount).containsExactly(10L, 9L, 8L);
+        assertThat(top).extracting(SpaceSaving.Entry::getError).containsOnly(0L);
+        assertThat(sketch.minCount()).isZero();
+        assertThat(sketch.getTotal()).isEqualTo(55);
+    }
+
+    /**
+     * Для ключей скетча истинное значение в [count - error, count] и error <= total / capacity,
+     * для остальных - не больше minCount; ключи чаще total / capacity обязаны быть в скетче.
+     */
+    private static void assertBounds(SpaceSaving sketch, Map<StatKey, Long> exact) {
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertThat(sketch.getTotal()).isEqualTo(total);
+        Map<StatKey, SpaceSaving.Entry> entries = new HashMap<>();
+        for (SpaceSaving.Entry entry : sketch.top(CAPACITY)) {
+            entries.put(entry.getKey(), entry);
+            long hits = exact.getOrDefault(entry.getKey(), 0L);
+            assertThat(hits).as("%s", entry.getKey())
+                    .isBetween(entry.getCount() - entry.getError(), entry.getCount());
+            assertThat(entry.getError()).isLessThanOrEqualTo(total / CAPACITY);
+        }
+        assertThat(entries).hasSize(CAPACITY);
+        exact.forEach((key, hits) -> {
+            if (!entries.containsKey(key)) {
+                assertThat(hits).as("%s", key).isLessThanOrEqualTo(sketch.minCount());
+            }
+            if (hits > total / CAPACITY) {
+                assertThat(entries).as("%s", key).containsKey(key);
+            }
+        });
+    }
+
+    /**
+     * Распределение, близкое к Zipf, с немного разными лидерами в разных бакетах.
+     */
+    private StatKey zipfKey(int bucket) {
+        int rank = (int) Math.floor(Math.pow(KEYS + 1, random.nextDouble())) - 1;
+        int uri = (rank + bucket * (rank < 5 ? 1 : 0)) % KEYS;
+        return new StatKey("ewm-main-service", "/events/" + uri);
+    }
+}
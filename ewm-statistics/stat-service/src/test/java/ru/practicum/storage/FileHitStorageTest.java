@@ -0,0 +1,102 @@
+package ru.practicum.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Контракт хранилища для файловых сегментов, а также видимость сегмента относительно транзакции записи,
+ * повторное открытие каталога и отказ стартовать вместе с производными структурами над hits и журналом WAL.
+ */
+class FileHitStorageTest extends HitStorageConformanceTest {
+
+    @TempDir
+    Path dir;
+
+    @Override
+    protected HitStorage emptyStorage() throws IOException {
+        return open(new MockEnvironment());
+    }
+
+    @Test
+    void reopensPublishedSegments() throws IOException {
+        HitStorage reopened = open(new MockEnvironment());
+
+        assertThat(reopened.aggregate(T0, T0.plusHours(2), null, false))
+                .isEqualTo(storage().aggregate(T0, T0.plusHours(2), null, false));
+    }
+
+    @Test
+    void publishesSegmentOnlyAfterCommit() {
+        List<TransactionSynchronization> synchronizations = appendInTransaction();
+        assertThat(storage().aggregate(T0.minusDays(1), T0.minusDays(1), null, false)).isEmpty();
+
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertThat(storage().aggregate(T0.minusDays(1), T0.minusDays(1), null, false)).hasSize(1);
+    }
+
+    @Test
+    void discardsSegmentOnRollback() throws IOException {
+        long files = countFiles();
+
+        List<TransactionSynchronization> synchronizations = appendInTransaction();
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(storage().aggregate(T0.minusDays(1), T0.minusDays(1), null, false)).isEmpty();
+        assertThat(countFiles()).isEqualTo(files);
+    }
+
+    @Test
+    void refusesToStartWithFeaturesReadingHitsTable() {
+        MockEnvironment environment = new MockEnvironment().withProperty("stat.rollup.enabled", "true");
+
+        assertThatThrownBy(() -> open(environment))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("stat.rollup.enabled");
+    }
+
+    @Test
+    void refusesToStartBehindWriteAheadLog() {
+        MockEnvironment environment = new MockEnvironment().withProperty("stat.wal.enabled", "true");
+
+        assertThatThrownBy(() -> open(environment))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("stat.wal.enabled");
+    }
+
+    private List<TransactionSynchronization> appendInTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            storage().append(List.of(hit(3, 30, A, T0.minusDays(1), null)));
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private FileHitStorage open(MockEnvironment environment) throws IOException {
+        FileHitStorage storage = new FileHitStorage(new SimpleMeterRegistry(), environment, dir.toString(), 64, 16);
+        storage.open();
+        return storage;
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
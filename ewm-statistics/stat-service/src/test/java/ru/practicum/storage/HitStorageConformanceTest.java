@@ -0,0 +1,152 @@
+package ru.practicum.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.entity.Hit;
+import ru.practicum.enums.Granularity;
+import ru.practicum.mapper.IpMapper;
+import ru.practicum.model.HitCount;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Общие проверки контракта {@link HitStorage}: каждая реализация должна считать одинаково.
+ * Наследник отдаёт пустое хранилище, тест сам записывает в него обращения.
+ */
+abstract class HitStorageConformanceTest {
+
+    static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 10, 10, 0);
+    static final String A = "10.0.0.1";
+    static final String B = "10.0.0.2";
+    static final String C = "2001:db8::1";
+
+    private HitStorage storage;
+
+    protected abstract HitStorage emptyStorage() throws Exception;
+
+    @BeforeEach
+    void fill() throws Exception {
+        storage = emptyStorage();
+        storage.append(fixture());
+    }
+
+    static List<Hit> fixture() {
+        return List.of(
+                hit(1, 10, A, T0, null),
+                hit(1, 10, A, T0.plusMinutes(30), null),
+                hit(1, 10, B, T0.plusHours(1), null),
+                hit(1, 11, A, T0.plusHours(1), null),
+                hit(2, 10, C, T0.plusHours(2), null),
+                hit(1, 12, A, T0.plusMinutes(10), 5L),
+                hit(1, 12, B, T0.plusMinutes(20), 5L),
+                hit(1, 13, A, T0.plusMinutes(20), 6L));
+    }
+
+    static Hit hit(int app, int uri, String ip, LocalDateTime timestamp, Long entityId) {
+        return Hit.builder()
+                .appId(app)
+                .uriId(uri)
+                .ip(IpMapper.toBytes(ip))
+                .routeId(entityId != null ? 1 : null)
+                .entityId(entityId)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    @Test
+    void countsAllHitsInRange() {
+        List<HitCount> counts = storage.aggregate(T0, T0.plusHours(2), null, false);
+
+        assertThat(counts).containsExactlyInAnyOrder(count(1, 10, 3), count(1, 12, 2), count(1, 11, 1),
+                count(2, 10, 1), count(1, 13, 1));
+        assertThat(counts.get(0)).isEqualTo(count(1, 10, 3));
+    }
+
+    @Test
+    void countsUniqueVisitors() {
+        assertThat(storage.aggregate(T0, T0.plusHours(2), null, true)).containsExactlyInAnyOrder(
+                count(1, 10, 2), count(1, 12, 2), count(1, 11, 1), count(2, 10, 1), count(1, 13, 1));
+    }
+
+    @Test
+    void includesBothRangeEdges() {
+        assertThat(storage.aggregate(T0, T0.plusHours(1), null, false)).containsExactlyInAnyOrder(
+                count(1, 10, 3), count(1, 11, 1), count(1, 12, 2), count(1, 13, 1));
+        assertThat(storage.aggregate(T0.plus(1, ChronoUnit.MICROS), T0.plusHours(1).minus(1, ChronoUnit.MICROS),
+                null, false)).containsExactlyInAnyOrder(count(1, 10, 1), count(1, 12, 2), count(1, 13, 1));
+        assertThat(storage.aggregate(T0.plusHours(2), T0.plusHours(2), null, false))
+                .containsExactly(count(2, 10, 1));
+        assertThat(storage.aggregate(T0.minusDays(1), T0.minus(1, ChronoUnit.MICROS), null, false)).isEmpty();
+    }
+
+    @Test
+    void filtersByUri() {
+        assertThat(storage.aggregate(T0, T0.plusHours(2), List.of(10, 11), false))
+                .containsExactlyInAnyOrder(count(1, 10, 3), count(1, 11, 1), count(2, 10, 1));
+        assertThat(storage.aggregate(T0, T0.plusHours(2), List.of(99), false)).isEmpty();
+    }
+
+    @Test
+    void streamsTheSameRowsAsAggregate() {
+        List<HitCount> streamed = new ArrayList<>();
+        storage.stream(T0, T0.plusHours(2), List.of(10, 12), true, streamed::add);
+
+        assertThat(streamed).containsExactlyInAnyOrderElementsOf(
+                storage.aggregate(T0, T0.plusHours(2), List.of(10, 12), true));
+    }
+
+    @Test
+    void returnsTopByHits() {
+        assertThat(storage.top(T0, T0.plusHours(2), 1, false)).containsExactly(count(1, 10, 3));
+    }
+
+    @Test
+    void countsByApp() {
+        assertThat(storage.countByApp(T0, T0.plusHours(2), List.of(10, 11, 12), true))
+                .isEqualTo(Map.of(1, 2L, 2, 1L));
+        assertThat(storage.countByApp(T0, T0.plusHours(2), List.of(10, 11, 12), false))
+                .isEqualTo(Map.of(1, 6L, 2, 1L));
+    }
+
+    @Test
+    void countsBucketsInHalfOpenRange() {
+        assertThat(buckets(T0, T0.plusHours(2).plus(1, ChronoUnit.MICROS), false)).containsExactlyInAnyOrder(
+                "1/10/" + T0 + "=2", "1/10/" + T0.plusHours(1) + "=1", "1/11/" + T0.plusHours(1) + "=1",
+                "2/10/" + T0.plusHours(2) + "=1", "1/12/" + T0 + "=2", "1/13/" + T0 + "=1");
+        assertThat(buckets(T0, T0.plusHours(1), true)).containsExactlyInAnyOrder(
+                "1/10/" + T0 + "=1", "1/12/" + T0 + "=2", "1/13/" + T0 + "=1");
+    }
+
+    @Test
+    void countsEntities() {
+        assertThat(storage.aggregateEntities(T0, T0.plusHours(2), 1, List.of(5L), true))
+                .containsExactly(new EntityStatsDto(5L, 2L));
+        assertThat(storage.aggregateEntityRange(T0, T0.plusHours(2), 1, 5, 6, false))
+                .containsExactlyInAnyOrder(new EntityStatsDto(5L, 2L), new EntityStatsDto(6L, 1L));
+        assertThat(storage.aggregateEntities(T0.plusMinutes(20), T0.plusMinutes(20), 1, List.of(5L, 6L), false))
+                .containsExactlyInAnyOrder(new EntityStatsDto(5L, 1L), new EntityStatsDto(6L, 1L));
+        assertThat(storage.aggregateEntityRange(T0, T0.plusHours(2), 2, 5, 6, false)).isEmpty();
+    }
+
+    protected HitStorage storage() {
+        return storage;
+    }
+
+    private List<String> buckets(LocalDateTime from, LocalDateTime to, boolean unique) {
+        List<String> buckets = new ArrayList<>();
+        storage.countBuckets(Granularity.HOUR, from, to, null, unique,
+                (app, uri, bucket, hits) -> buckets.add(app + "/" + uri + "/" + bucket + "=" + hits));
+        return buckets;
+    }
+
+    private static HitCount count(int app, int uri, long hits) {
+        return new HitCount(app, uri, hits);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Контракт хранилища для таблицы hits на встроенной H2.
+ */
+@SpringBootTest(properties = {
+        "SPRING_DATASOURCE_URL=jdbc:h2:mem:jpa-hit-storage",
+        "spring.jpa.show-sql=false"
+})
+class JpaHitStorageTest extends HitStorageConformanceTest {
+
+    @Autowired
+    private HitStorage hitStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    protected HitStorage emptyStorage() {
+        jdbcTemplate.update("delete from hits");
+        return hitStorage;
+    }
+}